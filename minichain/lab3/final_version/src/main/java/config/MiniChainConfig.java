@@ -2,9 +2,57 @@ package config;
 
 /**
  * 该类为配置类，主要有两个字段：
- *    DIFFICULTY: 挖矿的难度值，即规定了新的区块的哈希值至少以几个0开头才满足难度条件
+ *    DIFFICULTY: 挖矿的初始难度值，即新的区块的哈希值大约需要以几个0开头，实际使用时换算为区块头中的目标值bits
  *
  *    MAX_TRANSACTION_COUNT: 交易池大小；TransactionProducer需要随机生成交易，放入交易池中，直至达到该大小
+ *
+ *    PARALLEL_MINE: 是否使用多线程挖矿引擎，为false时使用单线程挖矿，便于两者对比
+ *
+ *    MINER_THREAD_NUM: 多线程挖矿时的工作线程总数，默认为CPU核数，由MINER_NUM个同时挖矿的矿工平分（每个矿工至少1个）
+ *
+ *    BINARY_HEADER_HASH: 为true时区块哈希只对定长的二进制区块头计算，为false时对整个区块的二进制编码计算
+ *
+ *    MIDSTATE_HASH: 二进制区块头挖矿时是否复用区块头前缀的SHA256中间状态，为false时每次尝试调用一次MessageDigest；
+ *                   默认为false：CPU支持SHA指令时JVM以硬件实现MessageDigest，比纯Java的midstate快2到3倍（约6 MH/s对2 MH/s），
+ *                   只有在没有SHA指令的CPU上或以-XX:-UseSHA运行时才应设为true，可用MiningHasherBenchmark对比
+ *
+ *    MINING_LANES: 多线程挖矿时每个工作线程一次计算的nonce个数，大于1时使用可被JIT自动向量化的多路哈希器，
+ *                  在支持AVX2/AVX-512的机器上取256左右效果较好，为1时使用单路的MiningHasher；
+ *                  默认为1，多路哈希器需要手动开启：没有宽向量指令或只有一两个核时它比单路慢，
+ *                  开启前先用MultiLaneHasherBenchmark在目标机器上对比两者的吞吐量
+ *
+ *    TARGET_BLOCK_INTERVAL: 期望的出块间隔（毫秒）
+ *
+ *    RETARGET_INTERVAL: 每隔多少个区块根据实际出块时间调整一次目标值
+ *
+ *    MAX_FUTURE_BLOCK_TIME: 新区块的时间戳至多比本机当前时间晚多少毫秒；时间戳还必须晚于最近若干区块时间戳的中位数，
+ *                           矿工无法通过随意填写时间戳操纵难度调整
+ *
+ *    PIPELINED_MINE: 是否在挖当前区块的同时组装下一个区块模板（取交易、验签、计算Merkle树）
+ *
+ *    CONSENSUS_ENGINE: 共识引擎，"pow"为工作量证明，"instant"为交易池放出交易即出块，"poa"为权威证明轮流出块
+ *
+ *    AUTHORITY_NUM: 权威证明共识下进程内签名节点的个数
+ *
+ *    MINER_NUM: 进程内竞争出块的矿工个数；流水线模式下每个矿工都拿到同一个区块模板，
+ *               一个矿工出块后其余矿工立即放弃手头的工作，非流水线模式下矿工轮流从交易池取交易
+ *
+ *    PARALLEL_MERKLE_THRESHOLD: 区块中的交易数不少于该值时，在ForkJoin线程池上并行计算交易哈希和Merkle树的各层，
+ *                               结果与顺序计算完全相同；交易较少时线程调度的开销大于收益
+ *
+ *    BLOCK_FILE: 区块链的持久化文件，不为null时每个新区块追加写入该文件，启动时从中读回整条区块链；
+ *                为null时区块链只保存在内存中，每次启动都新建创世区块
+ *
+ *    TX_INDEX_FILE: 交易索引（交易哈希 -> 区块高度和位置）的持久化文件，为null时索引只保存在内存中
+ *
+ *    UTXO_STORE_FILE: 不为null时链状态中的utxo保存在该内存映射文件中（堆外），适合utxo数量很大的情况；
+ *                     为null时保存在堆内的哈希表中
+ *
+ *    SNAPSHOT_DIR: 链状态快照的目录，不为null时每SNAPSHOT_INTERVAL个区块写入一次快照，
+ *                  启动时载入与链相符的最新快照并只重放其后的区块；为null时不使用快照。
+ *                  快照按区块哈希与链对应，需同时配置BLOCK_FILE，否则重启后的新创世区块与任何快照都不相符
+ *
+ *    SNAPSHOT_INTERVAL: 每隔多少个区块写入一次链状态快照
  */
 public class MiniChainConfig {
 
@@ -16,4 +64,40 @@ public class MiniChainConfig {
 
     public static final int INIT_AMOUNT = 10000;
 
+    public static final boolean PARALLEL_MINE = true;
+
+    public static final int MINER_THREAD_NUM = Runtime.getRuntime().availableProcessors();
+
+    public static final boolean BINARY_HEADER_HASH = true;
+
+    public static final boolean MIDSTATE_HASH = false;
+
+    public static final int MINING_LANES = 1;
+
+    public static final long TARGET_BLOCK_INTERVAL = 10 * 1000;
+
+    public static final int RETARGET_INTERVAL = 10;
+
+    public static final long MAX_FUTURE_BLOCK_TIME = 60 * 1000;
+
+    public static final boolean PIPELINED_MINE = true;
+
+    public static final String CONSENSUS_ENGINE = "pow";
+
+    public static final int AUTHORITY_NUM = 3;
+
+    public static final int MINER_NUM = 2;
+
+    public static final int PARALLEL_MERKLE_THRESHOLD = 4096;
+
+    public static final String BLOCK_FILE = null;
+
+    public static final String TX_INDEX_FILE = null;
+
+    public static final String UTXO_STORE_FILE = null;
+
+    public static final String SNAPSHOT_DIR = null;
+
+    public static final int SNAPSHOT_INTERVAL = 100;
+
 }
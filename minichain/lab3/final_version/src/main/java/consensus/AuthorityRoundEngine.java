@@ -0,0 +1,65 @@
+package consensus;
+
+import data.Block;
+import data.BlockChain;
+import data.BlockHeader;
+import utils.SecurityUtil;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 权威证明（PoA）轮流出块共识
+ *
+ * 进程内有若干个签名节点，高度为height的区块只能由第height % 签名节点数个节点出块，
+ * 出块节点用私钥对二进制区块头签名，其他节点用该节点的公钥验签即可确认区块合法，无需挖矿；
+ * 签名参与区块哈希的计算，下一区块链接到的是带签名的区块头
+ *
+ * 签名节点只存在于进程内，密钥使用各版本JDK都支持的secp256r1曲线
+ */
+public class AuthorityRoundEngine implements ConsensusEngine {
+
+    private final List<KeyPair> signers = new ArrayList<>();
+
+    /**
+     * @param signerNum 签名节点个数
+     */
+    public AuthorityRoundEngine(int signerNum) {
+        for (int i = 0; i < signerNum; ++i) {
+            signers.add(SecurityUtil.secp256r1Generate());
+        }
+    }
+
+    @Override
+    public Block seal(SealTask task) {
+        if (task.isStale()) {
+            return null;
+        }
+        Block template = task.getTemplate();
+        KeyPair signer = inTurnSigner(task.getHeight());
+        BlockHeader blockHeader = template.getBlockHeader();
+        blockHeader.setSignature(SecurityUtil.signature(blockHeader.toBytes(), signer.getPrivate()));
+        return template;
+    }
+
+    @Override
+    public boolean verify(Block block, int height, BlockChain blockChain) {
+        BlockHeader blockHeader = block.getBlockHeader();
+        if (blockHeader.getSignature() == null ||
+                !SecurityUtil.verify(blockHeader.toBytes(), blockHeader.getSignature(), inTurnSigner(height).getPublic())) {
+            System.out.println("block rejected: not signed by the in-turn authority " + height % signers.size());
+            return false;
+        }
+        return true;
+    }
+
+    private KeyPair inTurnSigner(int height) {
+        return signers.get(height % signers.size());
+    }
+
+    @Override
+    public String toString() {
+        return "authority round with " + signers.size() + " signer(s)";
+    }
+}
@@ -0,0 +1,76 @@
+package consensus;
+
+import data.BlockBody;
+import data.Transaction;
+import data.TransactionPool;
+
+import java.util.List;
+
+/**
+ * 区块模板组装线程
+ *
+ * 流水线模式下，矿工线程挖当前区块的同时，该线程从交易池取出下一批交易，完成验签和Merkle树计算，
+ * 将组装好的区块体放入队列，矿工挖完当前区块后即可立即开始下一个区块，无需在区块之间空等
+ *
+ * 有多个矿工时，同一个区块体会交给每个矿工，由它们竞争出块；验签和Merkle树计算只做一次，耗时计入第一个矿工的统计；
+ * 矿工尚未取走的模板若已被其他矿工打包上链，交付新模板时直接替换，不必等该矿工取走后再丢弃
+ */
+public class BlockTemplateAssembler extends Thread {
+
+    private final List<MinerPeer> minerPeers;
+    private final TransactionPool transactionPool;
+    private final MinerPeer minerPeer;
+    private final MinerMetrics metrics;
+
+    /**
+     * @param minerPeers 竞争出块的矿工，第一个矿工负责验签
+     * @param transactionPool 交易池
+     */
+    public BlockTemplateAssembler(List<MinerPeer> minerPeers, TransactionPool transactionPool) {
+        super("template-assembler");
+        this.minerPeers = minerPeers;
+        this.transactionPool = transactionPool;
+        this.minerPeer = minerPeers.get(0);
+        this.metrics = minerPeer.getMetrics();
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Transaction[] transactions;
+            long start;
+            // 只在取交易时锁住交易池，取完立即唤醒生成交易的线程
+            synchronized (transactionPool) {
+                while (!transactionPool.isFull()) {
+                    try {
+                        transactionPool.wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+                start = System.nanoTime();
+                transactions = transactionPool.getAll();
+                transactionPool.notify();
+            }
+            start = metrics.record(MinerMetrics.Stage.DRAIN, start);
+
+            if (!minerPeer.check(transactions)) {
+                System.out.println("transactions error!");
+                System.exit(-1);
+            }
+            start = metrics.record(MinerMetrics.Stage.VERIFY, start);
+
+            BlockBody blockBody = minerPeer.getBlockBody(transactions);
+            metrics.record(MinerMetrics.Stage.MERKLE, start);
+
+            for (MinerPeer peer : minerPeers) {
+                try {
+                    peer.offerTemplate(blockBody);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
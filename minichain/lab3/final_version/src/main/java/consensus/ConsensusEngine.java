@@ -0,0 +1,31 @@
+package consensus;
+
+import data.Block;
+import data.BlockChain;
+
+/**
+ * 共识引擎，负责对矿工组装好的区块模板进行封装（如挖矿、签名），以及验证区块的封装是否合法
+ *
+ * 矿工和区块链只通过该接口与具体的共识算法交互，便于在工作量证明之外替换为更轻量的共识，
+ * 从而单独测试交易池、验签和UTXO等环节的吞吐量
+ */
+public interface ConsensusEngine {
+
+    /**
+     * 封装区块模板
+     *
+     * @param task 封装任务，其区块模板的区块头中preBlockHash、merkleRootHash和bits已经填好
+     * @return 封装完成的区块，任务在封装期间过时（链上已出现同高度的区块）时返回null
+     */
+    Block seal(SealTask task);
+
+    /**
+     * 验证区块的封装是否合法，调用时该区块尚未加入区块链
+     *
+     * @param block 待验证的区块
+     * @param height 该区块在链上的高度
+     * @param blockChain 区块链
+     * @return 是否合法
+     */
+    boolean verify(Block block, int height, BlockChain blockChain);
+}
@@ -0,0 +1,25 @@
+package consensus;
+
+import data.Block;
+import data.BlockChain;
+
+/**
+ * 即时封装共识，交易池放出一批交易后立即出块，不做任何工作量证明，仅用于压测交易处理链路
+ */
+public class InstantSealEngine implements ConsensusEngine {
+
+    @Override
+    public Block seal(SealTask task) {
+        return task.isStale() ? null : task.getTemplate();
+    }
+
+    @Override
+    public boolean verify(Block block, int height, BlockChain blockChain) {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "instant seal";
+    }
+}
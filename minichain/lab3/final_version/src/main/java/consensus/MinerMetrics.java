@@ -0,0 +1,118 @@
+package consensus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 矿工各阶段的耗时统计，用于观察出块过程中时间花在了哪里
+ *
+ * 多个矿工竞争出块时另外统计：
+ *    过时工作比例：花在最终被放弃的区块模板上的哈希次数占总哈希次数的比例
+ *    孤块率：挖出但因其他矿工抢先出块而未能加入区块链的区块占挖出区块总数的比例
+ * 二者随矿工数量增加而上升，可据此调整每台主机上的矿工数量
+ */
+public class MinerMetrics {
+
+    /**
+     * 出块过程的各个阶段
+     */
+    public enum Stage {
+        // 矿工等待下一个区块模板
+        IDLE,
+        // 从交易池取出一批交易
+        DRAIN,
+        // 验证交易签名
+        VERIFY,
+        // 计算Merkle树
+        MERKLE,
+        // 挖矿并加入区块链
+        MINE,
+        // 广播区块头
+        BROADCAST,
+        // 出块后统计所有账户余额
+        AUDIT
+    }
+
+    private final AtomicLongArray totalNanos = new AtomicLongArray(Stage.values().length);
+    private final AtomicLongArray counts = new AtomicLongArray(Stage.values().length);
+    private final AtomicLong hashes = new AtomicLong();
+    private final AtomicLong staleHashes = new AtomicLong();
+    private final AtomicLong blocks = new AtomicLong();
+    private final AtomicLong orphanBlocks = new AtomicLong();
+
+    /**
+     * 记录某阶段的一次耗时
+     * @param stage 阶段
+     * @param startNanos 该阶段开始时System.nanoTime()的值
+     * @return 当前时间，可直接作为下一阶段的开始时间
+     */
+    public long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        totalNanos.addAndGet(stage.ordinal(), now - startNanos);
+        counts.incrementAndGet(stage.ordinal());
+        return now;
+    }
+
+    /**
+     * @param stage 阶段
+     * @return 该阶段的平均耗时（毫秒）
+     */
+    public double getAverageMillis(Stage stage) {
+        long count = counts.get(stage.ordinal());
+        return count == 0 ? 0 : totalNanos.get(stage.ordinal()) / 1e6 / count;
+    }
+
+    /**
+     * 记录一次封装任务的哈希次数
+     * @param count 哈希次数
+     * @param stale 该任务是否因过时而被放弃
+     */
+    public void recordWork(long count, boolean stale) {
+        hashes.addAndGet(count);
+        if (stale) {
+            staleHashes.addAndGet(count);
+        }
+    }
+
+    /**
+     * 记录一个挖出的区块
+     * @param orphan 该区块是否未能加入区块链
+     */
+    public void recordBlock(boolean orphan) {
+        blocks.incrementAndGet();
+        if (orphan) {
+            orphanBlocks.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return 过时工作比例
+     */
+    public double getStaleWorkRate() {
+        long total = hashes.get();
+        return total == 0 ? 0 : (double) staleHashes.get() / total;
+    }
+
+    /**
+     * @return 孤块率
+     */
+    public double getOrphanRate() {
+        long total = blocks.get();
+        return total == 0 ? 0 : (double) orphanBlocks.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("MinerMetrics{");
+        for (Stage stage : Stage.values()) {
+            if (stage.ordinal() > 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(stage.name().toLowerCase())
+                    .append(String.format("=%.3fms", getAverageMillis(stage)));
+        }
+        stringBuilder.append(String.format(", staleWork=%.2f%%, orphanRate=%.2f%%",
+                getStaleWorkRate() * 100, getOrphanRate() * 100));
+        return stringBuilder.append('}').toString();
+    }
+}
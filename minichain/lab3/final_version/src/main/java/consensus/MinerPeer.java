@@ -3,16 +3,22 @@ package consensus;
 import config.MiniChainConfig;
 import data.*;
 import network.NetWork;
+import spv.MultiProof;
 import spv.Proof;
 import spv.SpvPeer;
-import utils.MinerUtil;
+import utils.Hash;
 import utils.SecurityUtil;
 
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.Lock;
 
 /**
  * 矿工线程
@@ -30,6 +36,9 @@ public class MinerPeer extends Thread {
 
     private final BlockChain blockChain;
     private final NetWork netWork;
+    private final MinerMetrics metrics = new MinerMetrics();
+    // 流水线模式下由组装线程放入的区块模板
+    private final BlockingQueue<BlockBody> templates = new ArrayBlockingQueue<>(1);
 
     public MinerPeer(BlockChain blockChain, NetWork netWork){
         this.blockChain = blockChain;
@@ -41,11 +50,16 @@ public class MinerPeer extends Thread {
      */
     @Override
     public void run(){
+        if (MiniChainConfig.PIPELINED_MINE) {
+            runPipelined();
+            return;
+        }
         while(true){
             // 锁住网络中的交易池
             synchronized(netWork.getTransactionPool()){
                 TransactionPool transactionPool = netWork.getTransactionPool();
 
+                long start = System.nanoTime();
                 while(!transactionPool.isFull()){
                     try{
                         transactionPool.wait();
@@ -53,41 +67,122 @@ public class MinerPeer extends Thread {
                         e.printStackTrace();
                     }
                 }
+                start = metrics.record(MinerMetrics.Stage.IDLE, start);
 
                 Transaction[] transactions = transactionPool.getAll();
+                start = metrics.record(MinerMetrics.Stage.DRAIN, start);
 
                 // 对该交易的签名进行验签
                 if(!check(transactions)){
                     System.out.println("transactions error!");
                     System.exit(-1);
                 }
+                start = metrics.record(MinerMetrics.Stage.VERIFY, start);
 
                 BlockBody blockBody = getBlockBody(transactions);
-                Block block = mine(blockBody);
-                broadcast(block);
+                start = metrics.record(MinerMetrics.Stage.MERKLE, start);
 
-                System.out.println("the sum of all account amount: " + blockChain.getAllAccountAmount());
+                sealAndPublish(blockBody, start);
                 transactionPool.notify();
             }
         }
     }
 
     /**
-     * 矿工检查每笔交易的签名是否正确，是否有篡改
+     * 流水线模式：由组装线程准备下一个区块模板，矿工线程只负责挖矿和发布，挖矿期间交易池不被锁住
+     */
+    private void runPipelined() {
+        while (true) {
+            long start = System.nanoTime();
+            BlockBody blockBody;
+            try {
+                blockBody = nextTemplate();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                continue;
+            }
+            start = metrics.record(MinerMetrics.Stage.IDLE, start);
+            sealAndPublish(blockBody, start);
+        }
+    }
+
+    /**
+     * 组装线程向该矿工提交下一个区块模板，矿工尚未取走上一个模板时阻塞；
+     * 上一个模板已被其他矿工打包上链时直接丢弃，换成新模板
+     * @param blockBody 区块体
+     * @throws InterruptedException 等待时被中断
+     */
+    void offerTemplate(BlockBody blockBody) throws InterruptedException {
+        BlockBody queued = templates.peek();
+        if (queued != null && blockChain.containsBlockBody(queued)) {
+            templates.remove(queued);
+        }
+        templates.put(blockBody);
+    }
+
+    /**
+     * 取出下一个区块模板，跳过已被其他矿工打包上链的模板，没有模板时阻塞
+     * @return 尚未上链的区块模板
+     * @throws InterruptedException 等待时被中断
+     */
+    public BlockBody nextTemplate() throws InterruptedException {
+        while (true) {
+            BlockBody blockBody = templates.take();
+            if (!blockChain.containsBlockBody(blockBody)) {
+                return blockBody;
+            }
+        }
+    }
+
+    /**
+     * 挖矿、广播并统计账户余额，记录各阶段耗时
+     * @param blockBody 区块体
+     * @param start 挖矿阶段的开始时间
+     */
+    private void sealAndPublish(BlockBody blockBody, long start) {
+        // 矿工线程之间共享读锁，同时挖矿互相竞争
+        Lock lock = blockChain.getMineLock().readLock();
+        Block block;
+        lock.lock();
+        try {
+            block = mineLocked(blockBody, false);
+        } finally {
+            lock.unlock();
+        }
+        start = metrics.record(MinerMetrics.Stage.MINE, start);
+
+        System.out.println("the sum of all account amount: " + blockChain.getAllAccountAmount());
+        metrics.record(MinerMetrics.Stage.AUDIT, start);
+        System.out.println(metrics);
+    }
+
+    /**
+     * 矿工检查每笔交易的签名是否正确，是否有篡改，再按链状态检查交易的输入：
+     * 每个输入都是未使用的utxo且锁定在发送方的公钥哈希上，输入总额不少于输出总额；
+     * 交易池中的交易由账户之间转账产生，必须有输入，没有输入的发行交易只能由网络直接出块
      * @param transactions
      * @return
      */
-    private boolean check(Transaction[] transactions){
+    boolean check(Transaction[] transactions){
         for(int i = 0; i < transactions.length; ++i){
             Transaction transaction = transactions[i];
-            // 签名的数据是该交易的inUtxos和outUtxos
-            byte[] data = SecurityUtil.utxos2Bytes(transaction.getInUtxos(), transaction.getOutUtxos());
+            if(transaction.getInputs().length == 0){
+                System.out.println("transaction rejected: " + transaction.getTxHash() + " has no inputs");
+                return false;
+            }
+            // 签名的数据是该交易的inUtxos和outUtxos，只需对其摘要验签
             byte[] sign = transaction.getSendSign();
             PublicKey publicKey = transaction.getSendPublicKey();
-            if(!SecurityUtil.verify(data, sign, publicKey)){
+            if(!SecurityUtil.verify(transaction.getSigHash(), sign, publicKey)){
                 return false;
             }
         }
+        try{
+            blockChain.validateTransactions(transactions);
+        } catch (IllegalArgumentException e){
+            System.out.println("transaction rejected: " + e.getMessage());
+            return false;
+        }
         return true;
     }
 
@@ -103,23 +198,8 @@ public class MinerPeer extends Thread {
     public BlockBody getBlockBody(Transaction[] transactions) {
         assert transactions != null && transactions.length == MiniChainConfig.MAX_TRANSACTION_COUNT;
         // todo
-        List<String> list = new ArrayList<>();
-        for(Transaction transaction : transactions){
-            String txHash = SecurityUtil.sha256Digest(transaction.toString());
-            list.add(txHash);
-        }
-
-        while(list.size() != 1){
-            List<String> newList = new ArrayList<>();
-            for(int i = 0; i < list.size(); i += 2){
-                String leftHash = list.get(i);
-                String rightHash = (i + 1 < list.size() ? list.get(i + 1) : leftHash);
-                String parentHash = SecurityUtil.sha256Digest(leftHash + rightHash);
-                newList.add(parentHash);
-            }
-            list = newList;
-        }
-        BlockBody blockBody = new BlockBody(list.get(0), transactions);
+        // Merkle树随区块体保存，之后提取验证路径时无需重新计算
+        BlockBody blockBody = new BlockBody(MerkleTree.build(transactions), transactions);
         return blockBody;
     }
 
@@ -127,27 +207,69 @@ public class MinerPeer extends Thread {
      * 该方法即在循环中完成"挖矿"操作，其实就是通过不断的变换区块中的nonce字段，直至区块的哈希值满足难度条件，
      * 即可将该区块加入区块链中
      *
+     * 具体的封装方式由网络的共识引擎决定，工作量证明之外也可以是即时封装或权威证明轮流出块
+     *
+     * 有多个矿工竞争出块时，其他矿工抢先出块会使当前的封装任务过时，此时放弃已做的工作，
+     * 若该区块体尚未被其他矿工打包，则在新的最新区块上重新组装区块继续挖矿
+     *
+     * 网络中直接出块的调用（如新建账户）使用该方法，持有区块链挖矿锁的写锁，等所有矿工手头的工作结束后独占出块，
+     * 不会与任何矿工在同一个最新区块上竞争
+     *
+     * 该区块可以包含没有输入的发行交易（见BlockChain.addIssuanceBlock）；区块上链后即按其高度向spv节点广播区块头，
+     * 调用方无需再广播
+     *
      * @param blockBody 区块体
+     * @return 由该矿工加入区块链的新区块，该区块体已被其他矿工打包或未通过区块链验证时返回null
      */
-    private Block mine(BlockBody blockBody) {
-        Block block = getBlock(blockBody);
-        while (true) {
-            String blockHash = SecurityUtil.sha256Digest(block.toString());
-            if (blockHash.startsWith(MinerUtil.hashPrefixTarget())) {
-                System.out.println("Mined a new Block! Detail of the new Block : ");
-                System.out.println(block.toString());
-                System.out.println("And the hash of this Block is : " + SecurityUtil.sha256Digest(block.toString()) +
-                                    ", you will see the hash value in next Block's preBlockHash field.");
-                System.out.println();
-                blockChain.addNewBlock(block);
-                break;
-            } else {
-                // todo
-                long nonce = new Random().nextLong();
-                block.getBlockHeader().setNonce(nonce);
+    public Block mine(BlockBody blockBody) {
+        Lock lock = blockChain.getMineLock().writeLock();
+        lock.lock();
+        try {
+            return mineLocked(blockBody, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param blockBody 区块体
+     * @param issuance 是否为网络直接出块的发行区块，见BlockChain.addIssuanceBlock
+     */
+    private Block mineLocked(BlockBody blockBody, boolean issuance) {
+        ConsensusEngine consensusEngine = netWork.getConsensusEngine();
+        while (!blockChain.containsBlockBody(blockBody)) {
+            // 先取高度再组装区块，期间若出现新的区块，任务会被立即判定为过时
+            int height = blockChain.getHeight() + 1;
+            SealTask task = new SealTask(getBlock(blockBody), height, blockChain);
+            long startTime = System.currentTimeMillis();
+            Block block = consensusEngine.seal(task);
+            metrics.recordWork(task.getHashes(), block == null);
+            if (block == null) {
+                System.out.println(getName() + " abandoned the stale block at height " + height);
+                continue;
             }
+            System.out.println("Mined a new Block in " + (System.currentTimeMillis() - startTime) + " ms by " +
+                                consensusEngine + "! Detail of the new Block : ");
+            System.out.println(block.toString());
+            System.out.println("And the hash of this Block is : " + block.getHash() +
+                                ", you will see the hash value in next Block's preBlockHash field.");
+            System.out.println();
+            if (issuance ? blockChain.addIssuanceBlock(block) : blockChain.addNewBlock(block)) {
+                metrics.recordBlock(false);
+                // 按区块在链上的高度广播，与其他矿工的广播先后无关
+                long broadcastStart = System.nanoTime();
+                broadcast(blockChain.heightOf(block), block);
+                metrics.record(MinerMetrics.Stage.BROADCAST, broadcastStart);
+                return block;
+            }
+            // 链没有前进说明区块本身未通过验证，重试也无济于事
+            if (blockChain.getHeight() < height) {
+                return null;
+            }
+            metrics.recordBlock(true);
+            System.out.println(getName() + " orphaned the block at height " + height);
         }
-        return block;
+        return null;
     }
 
     /**
@@ -163,9 +285,15 @@ public class MinerPeer extends Thread {
     public Block getBlock(BlockBody blockBody) {
         //todo
         Block lastBlock = blockChain.getLatestBlock();
-        String newHash = SecurityUtil.sha256Digest(lastBlock.toString());
+        Hash newHash = lastBlock.getHash();
         Random num = new Random();
-        BlockHeader newHeader = new BlockHeader(newHash, blockBody.getMerkleRootHash(), num.nextLong());
+        BlockHeader newHeader = new BlockHeader(newHash, blockBody.getMerkleRootHash(), blockChain.getNextBits(),
+                num.nextLong());
+        // 与最近的区块在同一毫秒内组装时，时间戳取链允许的最小值
+        long minTimestamp = blockChain.getMinTimestamp();
+        if (newHeader.getTimestamp() < minTimestamp) {
+            newHeader = new BlockHeader(newHeader, minTimestamp);
+        }
         return new Block(newHeader, blockBody);
     }
 
@@ -174,68 +302,69 @@ public class MinerPeer extends Thread {
      * @param proofTxHash spv请求验证交易的哈希
      * @return 返回验证路径，如果不存在该交易则返回null
      */
-    public Proof getProof(String proofTxHash){
-        Block proofBlock = null;
-        int proofHeight = -1;
-
-        // 遍历链上所有区块内的交易，计算其哈希，找出要验证哈希值的交易所在的区块
-        for(Block block : blockChain.getBlocks()){
-            ++ proofHeight;
-            for(Transaction transaction : block.getBlockBody().getTransactions()){
-                String txHash = SecurityUtil.sha256Digest(transaction.toString());
-                if(txHash.equals(proofTxHash)){
-                    proofBlock = block;
-                    break;
-                }
-            }
-            if(proofBlock != null){
-                break;
-            }
-        }
-
-        // 没找到该哈希的交易，返回null
-        if(proofBlock == null){
+    public Proof getProof(Hash proofTxHash){
+        // 通过交易索引找到交易所在的区块及其在区块中的位置，没找到该哈希的交易，返回null
+        TransactionIndex.Location location = blockChain.getTransactionLocation(proofTxHash);
+        if(location == null){
             return null;
         }
 
-        // 重新计算merkle树获得路径哈希值，同时记录相关的节点偏向信息，构建验证路径节点
-        List<Proof.Node> proofPath = new ArrayList<>();
-        List<String> list = new ArrayList<>();
-        String pathHash = proofTxHash;
-        for(Transaction transaction : proofBlock.getBlockBody().getTransactions()){
-            String txHash = SecurityUtil.sha256Digest(transaction.toString());
-            list.add(txHash);
-        }
+        // 从区块体保存的Merkle树中按下标取出验证路径
+        Block proofBlock = blockChain.getBlock(location.getHeight());
+        MerkleTree merkleTree = proofBlock.getBlockBody().getMerkleTree();
+        return new Proof(proofTxHash, merkleTree.getRoot(), location.getHeight(), merkleTree.getPath(location.getPosition()));
+    }
 
-        while(list.size() != 1){
-            List<String> newList = new ArrayList<>();
-            for(int i = 0; i < list.size(); i += 2){
-                String leftHash = list.get(i);
-                String rightHash = (i + 1 < list.size() ? list.get(i + 1) : leftHash);
-                String parentHash = SecurityUtil.sha256Digest(leftHash + rightHash);
-                newList.add(parentHash);
-
-                if(pathHash.equals(leftHash)){
-                    Proof.Node proofNode = new Proof.Node(rightHash, Proof.Orientation.RIGHT);
-                    proofPath.add(proofNode);
-                    pathHash = parentHash;
-                }
-                else if(pathHash.equals(rightHash)){
-                    Proof.Node proofNode = new Proof.Node(leftHash, Proof.Orientation.LEFT);
-                    proofPath.add(proofNode);
-                    pathHash = parentHash;
-                }
+    /**
+     * 返回多笔交易的验证路径，同一区块中的交易合并为一个MultiProof，共用的节点只发送一次
+     * @param proofTxHashes spv请求验证的交易哈希
+     * @return 按区块高度排列的合并验证路径，不存在的交易不出现在结果中
+     */
+    public List<MultiProof> getMultiProofs(Collection<Hash> proofTxHashes){
+        // 按区块分组，组内按交易在区块中的位置排序
+        Map<Integer, TreeMap<Integer, Hash>> groups = new TreeMap<>();
+        for(Hash txHash : proofTxHashes){
+            TransactionIndex.Location location = blockChain.getTransactionLocation(txHash);
+            if(location == null){
+                continue;
+            }
+            TreeMap<Integer, Hash> group = groups.get(location.getHeight());
+            if(group == null){
+                group = new TreeMap<>();
+                groups.put(location.getHeight(), group);
             }
-            list = newList;
+            group.put(location.getPosition(), txHash);
         }
-        String proofMerkleRootHash = list.get(0);
 
-        return new Proof(proofTxHash, proofMerkleRootHash, proofHeight, proofPath);
+        List<MultiProof> proofs = new ArrayList<>();
+        for(Map.Entry<Integer, TreeMap<Integer, Hash>> entry : groups.entrySet()){
+            int[] positions = new int[entry.getValue().size()];
+            Hash[] txHashes = new Hash[positions.length];
+            int i = 0;
+            for(Map.Entry<Integer, Hash> leaf : entry.getValue().entrySet()){
+                positions[i] = leaf.getKey();
+                txHashes[i] = leaf.getValue();
+                ++i;
+            }
+            MerkleTree merkleTree = blockChain.getBlock(entry.getKey()).getBlockBody().getMerkleTree();
+            proofs.add(new MultiProof(entry.getKey(), merkleTree.getRoot(), merkleTree.getLeafCount(), positions,
+                    txHashes, merkleTree.getMultiPath(positions)));
+        }
+        return proofs;
     }
 
-    public void broadcast(Block block){
+    /**
+     * 向spv节点广播区块头
+     * @param height 区块的高度
+     * @param block 链上的区块
+     */
+    public void broadcast(int height, Block block){
         // 每个spv节点接受区块头
         SpvPeer spvPeer = netWork.getSpvPeer();
-        spvPeer.accept(block.getBlockHeader());
+        spvPeer.accept(height, block.getBlockHeader());
+    }
+
+    public MinerMetrics getMetrics() {
+        return metrics;
     }
 }
@@ -0,0 +1,179 @@
+package consensus;
+
+import config.MiniChainConfig;
+import data.Block;
+import data.BlockHeader;
+import utils.MinerUtil;
+import utils.MiningHasher;
+import utils.MultiLaneHasher;
+import utils.Target;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多线程挖矿引擎
+ *
+ * 将64位的nonce空间切分为若干互不相交的区间，每个工作线程在自己的区间内顺序尝试nonce，
+ * 任一线程找到满足难度条件的区块后，其余线程立即停止搜索，并将该区块交还给矿工线程
+ *
+ * 工作线程搜索完自己的区间后滚动区块头的时间戳，得到新的区块头编码，再从头搜索同一区间，
+ * 因此不会重复尝试同一个区块头上的nonce；每次尝试只读写预先分配的数组，不产生任何垃圾
+ *
+ * MINING_LANES大于1时工作线程使用多路哈希器，一次尝试MINING_LANES个连续的nonce
+ *
+ * 区间从模板区块头中的nonce开始切分，多个矿工共用同一个引擎时各自的随机起点使它们不会重复搜索；
+ * 工作线程每次尝试前都检查封装任务是否过时，链上出现同高度的区块后在一次哈希的时间内放弃搜索
+ *
+ * mine等所有工作线程都退出后才返回，此时每个线程的哈希次数都已计入封装任务，统计结果不会偏少
+ */
+public class ParallelMiner {
+
+    private final int threadNum;
+    private final long nonceSpan;
+    private final ExecutorService executor;
+
+    /**
+     * 将2^64个nonce按无符号数平均切分给各工作线程，除不尽时余下的不足threadNum个nonce不被搜索
+     * @param threadNum 工作线程数
+     */
+    public ParallelMiner(int threadNum) {
+        this(threadNum, divideUnsigned(-1L, threadNum));
+    }
+
+    /**
+     * 无符号64位整数除法，divisor为正数
+     */
+    static long divideUnsigned(long dividend, long divisor) {
+        if (dividend >= 0) {
+            return dividend / divisor;
+        }
+        // 先对右移一位后的被除数做有符号除法，商至多再差1
+        long quotient = ((dividend >>> 1) / divisor) << 1;
+        long remainder = dividend - quotient * divisor;
+        return quotient + ((remainder ^ Long.MIN_VALUE) >= (divisor ^ Long.MIN_VALUE) ? 1 : 0);
+    }
+
+    /**
+     * @param threadNum 工作线程数
+     * @param nonceSpan 每个工作线程在一个区块头上尝试的nonce个数，搜索完后滚动时间戳
+     */
+    public ParallelMiner(int threadNum, long nonceSpan) {
+        this.threadNum = threadNum;
+        this.nonceSpan = nonceSpan;
+        // 多个矿工可能同时提交挖矿任务，线程池按需扩容，空闲线程可被后续任务复用
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "miner-worker-" + count.getAndIncrement());
+                // 工作线程不阻止虚拟机退出
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 以封装任务中的区块为模板进行多线程挖矿
+     *
+     * @param task 封装任务，各工作线程持有其区块模板的区块头副本，模板本身不会被改写
+     * @return 满足难度条件的区块，任务过时时返回null；返回时所有工作线程都已退出
+     */
+    public Block mine(SealTask task) {
+        Block template = task.getTemplate();
+        long base = template.getBlockHeader().getNonce();
+        AtomicReference<Block> winner = new AtomicReference<>();
+        // 一个线程找到区块后其余线程在一次哈希的时间内退出，等待它们不会明显推迟返回
+        CountDownLatch done = new CountDownLatch(threadNum);
+
+        for (int i = 0; i < threadNum; ++i) {
+            executor.execute(new Worker(task, base + nonceSpan * i, nonceSpan, winner, done));
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        return winner.get();
+    }
+
+    public int getThreadNum() {
+        return threadNum;
+    }
+
+    /**
+     * 工作线程，在[start, start + count)区间内顺序尝试nonce（按64位回绕），区间搜索完后滚动时间戳重新开始
+     */
+    private static class Worker implements Runnable {
+
+        private final SealTask task;
+        private Block block;
+        private final long start;
+        private final long count;
+        private final AtomicReference<Block> winner;
+        private final CountDownLatch done;
+
+        Worker(SealTask task, long start, long count, AtomicReference<Block> winner, CountDownLatch done) {
+            this.task = task;
+            // 每个线程持有独立的区块头副本，互不干扰
+            Block template = task.getTemplate();
+            this.block = new Block(new BlockHeader(template.getBlockHeader()), template.getBlockBody());
+            this.start = start;
+            this.count = count;
+            this.winner = winner;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            BlockHeader header = block.getBlockHeader();
+            Target target = Target.fromBits(header.getBits());
+            boolean multiLane = MiniChainConfig.BINARY_HEADER_HASH && MiniChainConfig.MINING_LANES > 1;
+            MiningHasher hasher = MiniChainConfig.BINARY_HEADER_HASH && !multiLane ? new MiningHasher(header) : null;
+            MultiLaneHasher laneHasher = multiLane ? new MultiLaneHasher(header, MiniChainConfig.MINING_LANES) : null;
+            // 多路模式下每次尝试lanes个nonce，区间长度向下取整为lanes的倍数
+            long step = multiLane ? MiniChainConfig.MINING_LANES : 1;
+            long limit = divideUnsigned(count, step) * step;
+            long hashes = 0;
+            long i = 0;
+            while (winner.get() == null && !task.isStale()) {
+                if (i == limit) {
+                    block = MinerUtil.rollTimestamp(block);
+                    header = block.getBlockHeader();
+                    hasher = hasher != null ? new MiningHasher(header) : null;
+                    laneHasher = laneHasher != null ? new MultiLaneHasher(header, MiniChainConfig.MINING_LANES) : null;
+                    i = 0;
+                }
+                long nonce = start + i;
+                i += step;
+                hashes += step;
+                boolean found;
+                if (laneHasher != null) {
+                    int lane = laneHasher.check(nonce, target);
+                    found = lane >= 0;
+                    nonce += lane;
+                } else if (hasher != null) {
+                    found = hasher.check(nonce, target);
+                } else {
+                    header.setNonce(nonce);
+                    found = target.isMetBy(MinerUtil.blockHashBytes(block));
+                }
+                if (found) {
+                    header.setNonce(nonce);
+                    winner.compareAndSet(null, block);
+                    break;
+                }
+            }
+            // 先计入哈希次数再通知矿工线程，mine返回时统计已经完整
+            task.addHashes(hashes);
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package consensus;
+
+import config.MiniChainConfig;
+import data.Block;
+import data.BlockChain;
+import data.BlockHeader;
+import utils.MinerUtil;
+import utils.MiningHasher;
+import utils.Target;
+
+/**
+ * 工作量证明共识，根据配置使用多线程挖矿引擎或单线程挖矿
+ */
+public class ProofOfWorkEngine implements ConsensusEngine {
+
+    private final ParallelMiner parallelMiner;
+
+    /**
+     * MINER_NUM个矿工同时挖矿，各自分得MINER_THREAD_NUM / MINER_NUM个工作线程，工作线程总数不超过MINER_THREAD_NUM
+     */
+    public ProofOfWorkEngine() {
+        this.parallelMiner = MiniChainConfig.PARALLEL_MINE
+                ? new ParallelMiner(Math.max(1, MiniChainConfig.MINER_THREAD_NUM / MiniChainConfig.MINER_NUM)) : null;
+    }
+
+    /**
+     * 该方法即在循环中完成"挖矿"操作，其实就是通过不断的变换区块中的nonce字段，直至区块的哈希值满足难度条件
+     */
+    @Override
+    public Block seal(SealTask task) {
+        if (parallelMiner != null) {
+            return parallelMiner.mine(task);
+        }
+        return mineSingleThread(task);
+    }
+
+    /**
+     * 单线程挖矿，从模板的nonce开始顺序尝试，整个nonce空间搜索完后滚动时间戳继续，直至区块满足难度条件，或链上已出现同高度的区块
+     *
+     * 二进制区块头模式下每次尝试只读写预先分配的数组，不产生任何垃圾
+     *
+     * @param task 封装任务，找到满足条件的nonce后直接写入其区块模板的区块头
+     * @return 满足难度条件的区块，任务过时时返回null
+     */
+    private Block mineSingleThread(SealTask task) {
+        Block block = task.getTemplate();
+        BlockHeader blockHeader = block.getBlockHeader();
+        Target target = Target.fromBits(blockHeader.getBits());
+        MiningHasher hasher = MiniChainConfig.BINARY_HEADER_HASH ? new MiningHasher(blockHeader) : null;
+        long start = blockHeader.getNonce();
+        long nonce = start;
+        long hashes = 0;
+        try {
+            while (!task.isStale()) {
+                ++hashes;
+                boolean found;
+                if (hasher != null) {
+                    found = hasher.check(nonce, target);
+                } else {
+                    blockHeader.setNonce(nonce);
+                    found = target.isMetBy(MinerUtil.blockHashBytes(block));
+                }
+                if (found) {
+                    blockHeader.setNonce(nonce);
+                    return block;
+                }
+                if (++nonce == start) {
+                    block = MinerUtil.rollTimestamp(block);
+                    blockHeader = block.getBlockHeader();
+                    hasher = hasher != null ? new MiningHasher(blockHeader) : null;
+                }
+            }
+            return null;
+        } finally {
+            task.addHashes(hashes);
+        }
+    }
+
+    /**
+     * 验证区块的目标值是否与难度调整算法计算的结果一致，以及区块哈希是否满足该目标值
+     */
+    @Override
+    public boolean verify(Block block, int height, BlockChain blockChain) {
+        BlockHeader blockHeader = block.getBlockHeader();
+        int nextBits = blockChain.getNextBits();
+        if (blockHeader.getBits() != nextBits) {
+            System.out.println("block rejected: bits 0x" + Integer.toHexString(blockHeader.getBits()) +
+                    " != expected 0x" + Integer.toHexString(nextBits));
+            return false;
+        }
+        if (!MinerUtil.checkProofOfWork(block)) {
+            System.out.println("block rejected: hash does not meet the target");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "proof of work with " + (parallelMiner != null ? parallelMiner.getThreadNum() : 1) + " thread(s)";
+    }
+}
@@ -0,0 +1,58 @@
+package consensus;
+
+import data.Block;
+import data.BlockChain;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次区块封装任务：区块模板、该区块的高度，以及封装过程中累计的哈希尝试次数
+ *
+ * 多个矿工竞争出块时，一旦链上已有同高度的区块，该任务即已过时，共识引擎应立即放弃，由矿工在新的最新区块上重新组装区块
+ */
+public class SealTask {
+
+    private final Block template;
+    private final int height;
+    private final BlockChain blockChain;
+    private final AtomicLong hashes = new AtomicLong();
+
+    /**
+     * @param template 区块模板
+     * @param height 该区块在链上的高度
+     * @param blockChain 区块链，为null时任务永不过时（如脱离网络单独挖矿）
+     */
+    public SealTask(Block template, int height, BlockChain blockChain) {
+        this.template = template;
+        this.height = height;
+        this.blockChain = blockChain;
+    }
+
+    public Block getTemplate() {
+        return template;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 只读一次volatile变量，挖矿线程可以在每次尝试nonce时调用
+     * @return 链上是否已经出现了同高度的区块
+     */
+    public boolean isStale() {
+        return blockChain != null && blockChain.getHeight() >= height;
+    }
+
+    /**
+     * 累加哈希尝试次数，各挖矿线程在结束时调用一次
+     * @param count 尝试次数
+     */
+    public void addHashes(long count) {
+        hashes.addAndGet(count);
+    }
+
+    public long getHashes() {
+        return hashes.get();
+    }
+}
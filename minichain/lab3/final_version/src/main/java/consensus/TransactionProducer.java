@@ -2,10 +2,12 @@ package consensus;
 
 import data.*;
 import network.NetWork;
+import utils.Hash;
 import utils.SecurityUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 
@@ -59,29 +61,31 @@ public class TransactionProducer extends Thread {
             String aWalletAddress = aAccount.getWalletAddress();
             String bWalletAddress = bAccount.getWalletAddress();
 
-            // 获取A可用的utxo并计算余额
-            UTXO[] aTrueUtxos = network.getBlockChain().getTrueUtxos(aWalletAddress);
-            int aAmount = aAccount.getAmount(aTrueUtxos);
+            // 直接读取A的余额
+            int aAmount = network.getBlockChain().getBalance(aWalletAddress);
             // 若A账户的余额为0，则无法构建交易，重新随机生成
             if(aAmount == 0){
                 continue;
             }
+            // 获取A可用的utxo
+            Map<OutPoint, UTXO> aUnspent = network.getBlockChain().getUnspent(aWalletAddress);
 
             // 随机生成交易数额[1, aAmount]之间
             int txAmount = random.nextInt(aAmount) + 1;
             // 构建InUtxo和OutUtxo
-            List<UTXO> inUtxoList = new ArrayList<>();
+            List<OutPoint> inputList = new ArrayList<>();
             List<UTXO> outUtxoList = new ArrayList<>();
 
             byte[] aUnlockSign = SecurityUtil.signature(aAccount.getPublicKey().getEncoded(), aAccount.getPrivateKey());
 
             // 选择输入总额 >= 交易数额的utxo
             int inAmount = 0;
-            for(UTXO utxo : aTrueUtxos){
+            for(Map.Entry<OutPoint, UTXO> entry : aUnspent.entrySet()){
+                UTXO utxo = entry.getValue();
                 // 解锁成功才能使用该utxo
                 if(utxo.unlockScript(aUnlockSign, aAccount.getPublicKey())){
                     inAmount += utxo.getAmount();
-                    inUtxoList.add(utxo);
+                    inputList.add(entry.getKey());
                     if(inAmount >= txAmount){
                         break;
                     }
@@ -100,18 +104,18 @@ public class TransactionProducer extends Thread {
             }
 
             // 导出固定utxo数组
-            UTXO[] inUtxos = inUtxoList.toArray(new UTXO[0]);
+            OutPoint[] inputs = inputList.toArray(new OutPoint[0]);
             UTXO[] outUtxos = outUtxoList.toArray(new UTXO[0]);
 
             // A账户需要对整个交易进行私钥签名，确保交易不会被篡改
-            // 获取要签名的数据
-            byte[] data = SecurityUtil.utxos2Bytes(inUtxos, outUtxos);
+            // 获取要签名的数据的摘要
+            Hash sigHash = SecurityUtil.sigHash(inputs, outUtxos);
             // A账户使用私钥签名
-            byte[] sign = SecurityUtil.signature(data, aAccount.getPrivateKey());
+            byte[] sign = SecurityUtil.signature(sigHash, aAccount.getPrivateKey());
             // 交易时间戳
             long timestamp = System.currentTimeMillis();
             // 构造交易
-            transaction = new Transaction(inUtxos, outUtxos, sign, aAccount.getPublicKey(), timestamp);
+            transaction = new Transaction(inputs, outUtxos, sign, aAccount.getPublicKey(), timestamp);
             // 成功构造一笔交易，退出循环
             break;
         }
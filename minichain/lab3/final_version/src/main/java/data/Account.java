@@ -1,6 +1,8 @@
 package data;
 
 import utils.Base58Util;
+import utils.BinaryReader;
+import utils.BinaryWriter;
 import utils.SecurityUtil;
 
 import java.security.KeyPair;
@@ -17,14 +19,26 @@ public class Account {
         this.publicKey = keyPair.getPublic();
     }
 
+    private Account(PublicKey publicKey, PrivateKey privateKey) {
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+    }
+
     /**
      * 根据账户的公钥计算钱包地址
      * @return 钱包地址
      */
     public String getWalletAddress(){
         // 公钥哈希
-        byte[] publicKeyHash = SecurityUtil.ripemd160Digest(SecurityUtil.sha256Digest(publicKey.getEncoded()));
+        return walletAddress(SecurityUtil.hash160(publicKey.getEncoded()));
+    }
 
+    /**
+     * 由公钥哈希计算钱包地址
+     * @param publicKeyHash 公钥的HASH160
+     * @return 钱包地址
+     */
+    public static String walletAddress(byte[] publicKeyHash){
         // 0X00 + 公钥哈希
         byte[] data = new byte[1 + publicKeyHash.length];
         data[0] = (byte) 0;
@@ -73,6 +87,20 @@ public class Account {
         return privateKey;
     }
 
+    /**
+     * 二进制编码，用于保存钱包：公钥的X.509编码（带长度） | 私钥的PKCS#8编码（带长度）
+     * @param writer 编码器
+     */
+    public void encode(BinaryWriter writer) {
+        writer.writeVarBytes(publicKey.getEncoded());
+        writer.writeVarBytes(privateKey.getEncoded());
+    }
+
+    public static Account decode(BinaryReader reader) {
+        PublicKey publicKey = SecurityUtil.decodePublicKey(reader.readVarBytes());
+        return new Account(publicKey, SecurityUtil.decodePrivateKey(reader.readVarBytes()));
+    }
+
     @Override
     public String toString() {
         return "Account{" +
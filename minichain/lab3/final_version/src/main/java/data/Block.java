@@ -1,5 +1,10 @@
 package data;
 
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+import utils.MinerUtil;
+
 /**
  * 区块的类抽象，组合了区块头和区块体
  *
@@ -8,6 +13,9 @@ public class Block {
 
     private final BlockHeader blockHeader;
     private final BlockBody blockBody;
+    // 缓存的区块哈希，区块头的nonce或签名改变后重新计算；哈希与修改次数放在同一个不可变对象中整体发布，
+    // 其他线程读到的哈希总与其修改次数对应
+    private volatile CachedHash cachedHash;
 
     public Block(BlockHeader blockHeader, BlockBody blockBody) {
         this.blockHeader = blockHeader;
@@ -22,6 +30,58 @@ public class Block {
         return blockBody;
     }
 
+    /**
+     * 区块加入区块链后不再修改，组装新区块和验证链接关系时只需读取缓存的哈希
+     *
+     * @return 区块哈希，计算方式见MinerUtil.blockHash
+     */
+    public Hash getHash() {
+        // 先读修改次数再计算，计算期间区块头若被修改，缓存的修改次数已过期，下次会重新计算
+        int revision = blockHeader.getRevision();
+        CachedHash cached = cachedHash;
+        if (cached == null || cached.revision != revision) {
+            cached = new CachedHash(MinerUtil.blockHash(this), revision);
+            cachedHash = cached;
+        }
+        return cached.hash;
+    }
+
+    /**
+     * 区块哈希及计算时区块头的修改次数
+     */
+    private static final class CachedHash {
+        private final Hash hash;
+        private final int revision;
+
+        private CachedHash(Hash hash, int revision) {
+            this.hash = hash;
+            this.revision = revision;
+        }
+    }
+
+    /**
+     * 二进制编码：区块头的完整编码 | 区块体的编码
+     * @param writer 编码器
+     */
+    public void encode(BinaryWriter writer) {
+        blockHeader.encode(writer);
+        blockBody.encode(writer);
+    }
+
+    public static Block decode(BinaryReader reader) {
+        BlockHeader blockHeader = BlockHeader.decode(reader);
+        return new Block(blockHeader, BlockBody.decode(reader));
+    }
+
+    /**
+     * @return 区块的二进制编码，用于存储和传输
+     */
+    public byte[] toBytes() {
+        BinaryWriter writer = new BinaryWriter(1024);
+        encode(writer);
+        return writer.toByteArray();
+    }
+
     @Override
     public String toString() {
         return "Block{" +
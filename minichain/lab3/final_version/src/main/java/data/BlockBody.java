@@ -1,5 +1,9 @@
 package data;
 
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+
 import java.util.Arrays;
 
 /**
@@ -7,18 +11,30 @@ import java.util.Arrays;
  *    transactions: 从交易池中取得的一批次交易
  *
  *    merkleRootHash: 使用上述交易，计算得到的Merkle树根哈希值
+ *
+ * 由矿工组装的区块体同时保存构建好的Merkle树，供提取交易的验证路径；Merkle树不参与编码，解码得到的区块体在第一次需要时重新构建
  */
 public class BlockBody {
 
     private final Transaction[] transactions;
-    private final String merkleRootHash;
+    private final Hash merkleRootHash;
+    private MerkleTree merkleTree;
 
-    public BlockBody(String merkleRootHash, Transaction[] transactions) {
+    public BlockBody(Hash merkleRootHash, Transaction[] transactions) {
         this.merkleRootHash = merkleRootHash;
         this.transactions = transactions;
     }
 
-    public String getMerkleRootHash() {
+    /**
+     * @param merkleTree 由这批交易构建的Merkle树
+     * @param transactions 一批次的交易
+     */
+    public BlockBody(MerkleTree merkleTree, Transaction[] transactions) {
+        this(merkleTree.getRoot(), transactions);
+        this.merkleTree = merkleTree;
+    }
+
+    public Hash getMerkleRootHash() {
         return merkleRootHash;
     }
 
@@ -26,6 +42,40 @@ public class BlockBody {
         return transactions;
     }
 
+    /**
+     * Merkle树的字段均不可变，多线程同时访问时至多重复构建一次
+     * @return 区块体中交易的Merkle树，没有交易（如创世区块）时返回null
+     */
+    public MerkleTree getMerkleTree() {
+        MerkleTree tree = merkleTree;
+        if (tree == null && transactions.length > 0) {
+            tree = MerkleTree.build(transactions);
+            merkleTree = tree;
+        }
+        return tree;
+    }
+
+    /**
+     * 二进制编码：Merkle根（32字节） | 交易个数（变长整数） | 各交易的编码
+     * @param writer 编码器
+     */
+    public void encode(BinaryWriter writer) {
+        writer.writeHash(merkleRootHash);
+        writer.writeVarInt(transactions.length);
+        for (Transaction transaction : transactions) {
+            transaction.encode(writer);
+        }
+    }
+
+    public static BlockBody decode(BinaryReader reader) {
+        Hash merkleRootHash = reader.readHash();
+        Transaction[] transactions = new Transaction[reader.readLength()];
+        for (int i = 0; i < transactions.length; ++i) {
+            transactions[i] = Transaction.decode(reader);
+        }
+        return new BlockBody(merkleRootHash, transactions);
+    }
+
     @Override
     public String toString() {
         return "BlockBody{" +
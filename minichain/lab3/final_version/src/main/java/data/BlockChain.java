@@ -1,42 +1,139 @@
 package data;
 
 import config.MiniChainConfig;
+import consensus.ConsensusEngine;
 import network.NetWork;
+import utils.Hash;
+import utils.MinerUtil;
 import utils.SecurityUtil;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 区块链的类抽象，创建该对象时会自动生成创世纪块，加入区块链中
  */
 public class BlockChain {
 
-    private final LinkedList<Block> blocks = new LinkedList<>();
-    private final NetWork network;
+    // 新区块的时间戳须晚于最近这么多个区块时间戳的中位数
+    private static final int MEDIAN_TIME_SPAN = 11;
+
+    private final List<Block> blocks = new ArrayList<>();
     private final List<Account> accounts;
+    private final ConsensusEngine consensusEngine;
+    // 最新区块的高度，挖矿线程无锁轮询该值判断自己的区块模板是否已经过时
+    private volatile int height;
+    // 链上交易的位置，随区块上链逐块更新
+    private final TransactionIndex transactionIndex;
+    // 当前未使用的utxo，随区块上链逐块更新
+    private final UtxoSet utxoSet;
+    // 区块的持久化文件，未配置时为null，区块链只保存在内存中
+    private final BlockStore blockStore;
+    // 串行化区块的添加和链状态快照的写入：写快照时只需挡住新区块，不必占用区块链对象的锁
+    private final Object appendLock = new Object();
+    // 矿工线程持有读锁同时挖矿，网络中直接出块的调用持有写锁，与所有矿工互斥
+    private final ReentrantReadWriteLock mineLock = new ReentrantReadWriteLock();
 
     public BlockChain(NetWork network) {
-        this.network = network;
-        this.accounts = network.getAccounts();
+        this(network.getAccounts(), network.getConsensusEngine());
+    }
+
+    /**
+     * @param accounts 网络中的账户，用于统计所有账户的余额
+     * @param consensusEngine 验证新区块封装的共识引擎
+     */
+    public BlockChain(List<Account> accounts, ConsensusEngine consensusEngine) {
+        this.accounts = accounts;
+        this.consensusEngine = consensusEngine;
+        this.transactionIndex = MiniChainConfig.TX_INDEX_FILE == null ? new TransactionIndex()
+                : new TransactionIndex(new File(MiniChainConfig.TX_INDEX_FILE));
+        this.blockStore = MiniChainConfig.BLOCK_FILE == null ? null
+                : new BlockStore(new File(MiniChainConfig.BLOCK_FILE));
 
         // 在创世区块中为每个账户分配一定金额的utxo，便于后续交易的进行
 //        Transaction[] transactions = genesisTransactions(accounts);
 
-        BlockHeader genesisBlockHeader = new BlockHeader(null, null,
-                Math.abs(new Random().nextLong()));
+        if (blockStore != null) {
+            blocks.addAll(blockStore.load());
+        }
+        if (blocks.isEmpty()) {
+            BlockHeader genesisBlockHeader = new BlockHeader(null, null,
+                    Math.abs(new Random().nextLong()));
 
-        BlockBody genesisBlockBody = new BlockBody(null, new Transaction[]{});
-        Block genesisBlock = new Block(genesisBlockHeader, genesisBlockBody);
+            BlockBody genesisBlockBody = new BlockBody((Hash) null, new Transaction[]{});
+            Block genesisBlock = new Block(genesisBlockHeader, genesisBlockBody);
 
-        System.out.println("Create the genesis Block! ");
-        System.out.println("And the hash of genesis Block is : " + SecurityUtil.sha256Digest(genesisBlock.toString()) +
-                ", you will see the hash value in next Block's preBlockHash field.");
-        System.out.println();
-        blocks.add(genesisBlock);
+            System.out.println("Create the genesis Block! ");
+            System.out.println("And the hash of genesis Block is : " + genesisBlock.getHash() +
+                    ", you will see the hash value in next Block's preBlockHash field.");
+            System.out.println();
+            blocks.add(genesisBlock);
+            if (blockStore != null) {
+                blockStore.append(genesisBlock);
+            }
+        } else {
+            System.out.println("Load " + blocks.size() + " blocks from " + MiniChainConfig.BLOCK_FILE
+                    + ", and the hash of the latest Block is : " + getLatestBlock().getHash());
+            System.out.println();
+        }
+        // 索引文件中已有的区块不再重复索引；索引属于另一条链（如未持久化区块时的上一次运行）时重建
+        if (!indexMatches()) {
+            transactionIndex.clear();
+        }
+        for (int i = transactionIndex.getHeight() + 1; i < blocks.size(); ++i) {
+            transactionIndex.add(blocks.get(i), i);
+        }
+        height = blocks.size() - 1;
+
+        // 链状态由最新的可用快照及其后的区块恢复；不持久化区块时链上只有创世区块，从头重放即可
+        if (MiniChainConfig.SNAPSHOT_DIR == null) {
+            UtxoSet utxoSet = new UtxoSet(createUtxoStore());
+            for (Block block : blocks) {
+                utxoSet.apply(block);
+            }
+            this.utxoSet = utxoSet;
+        } else {
+            this.utxoSet = UtxoSnapshot.restore(new File(MiniChainConfig.SNAPSHOT_DIR), blocks,
+                    new UtxoSnapshot.StoreFactory() {
+                        @Override
+                        public UtxoStore create() {
+                            return createUtxoStore();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return 交易索引的最高高度是否在链上，且该高度区块中的交易都索引在对应的位置
+     */
+    private boolean indexMatches() {
+        int indexHeight = transactionIndex.getHeight();
+        if (indexHeight >= blocks.size()) {
+            return false;
+        }
+        Transaction[] transactions = blocks.get(indexHeight).getBlockBody().getTransactions();
+        if (indexHeight > 0 && transactions.length == 0) {
+            return false;
+        }
+        for (int i = 0; i < transactions.length; ++i) {
+            TransactionIndex.Location location = transactionIndex.get(transactions[i].getTxHash());
+            if (location == null || location.getHeight() != indexHeight || location.getPosition() != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static UtxoStore createUtxoStore() {
+        return MiniChainConfig.UTXO_STORE_FILE == null ? new MemoryUtxoStore()
+                : new MappedUtxoStore(new File(MiniChainConfig.UTXO_STORE_FILE));
     }
 
     /**
@@ -60,46 +157,73 @@ public class BlockChain {
 //    }
 
     /**
-     * 遍历整个区块链获得某钱包地址相关的utxo，获得真正的utxo，即未被使用的utxo
+     * 从链状态中获得某钱包地址未被使用的utxo，无需遍历区块链
      * @param walletAddress
      * @return
      */
-    public UTXO[] getTrueUtxos(String walletAddress){
-        // 使用哈希表存储结果，保证每个utxo唯一
-        Set<UTXO> trueUtxoSet = new HashSet<>();
-        // 遍历每个区块
-        for(Block block : blocks){
-            BlockBody blockBody = block.getBlockBody();
-            Transaction[] transactions = blockBody.getTransactions();
-            // 遍历区块中的所有交易
-            for(Transaction transaction : transactions){
-                UTXO[] inUtxos = transaction.getInUtxos();
-                UTXO[] outUtxos = transaction.getOutUtxos();
-                // 交易中的inUtxo是已经使用的utxo，需要删除
-                for(UTXO utxo : inUtxos){
-                    if(utxo.getWalletAddress().equals(walletAddress)){
-                        trueUtxoSet.remove(utxo);
-                    }
-                }
-                // 交易中的outUtxo是新产生的utxo，可作为后续交易使用
-                for(UTXO utxo : outUtxos){
-                    if(utxo.getWalletAddress().equals(walletAddress)){
-                        trueUtxoSet.add(utxo);
-                    }
-                }
+    public synchronized UTXO[] getTrueUtxos(String walletAddress){
+        return utxoSet.getUtxos(walletAddress).values().toArray(new UTXO[0]);
+    }
+
+    /**
+     * 构造交易时使用，输入需要引用utxo的输出位置
+     * @param walletAddress 钱包地址
+     * @return 该地址未被使用的utxo及其输出位置
+     */
+    public synchronized Map<OutPoint, UTXO> getUnspent(String walletAddress){
+        return utxoSet.getUtxos(walletAddress);
+    }
+
+    /**
+     * @param outPoint 输出位置
+     * @return 该位置未使用的utxo，不存在或已被花费时返回null
+     */
+    public synchronized UTXO getUtxo(OutPoint outPoint) {
+        return utxoSet.get(outPoint);
+    }
+
+    /**
+     * 按当前的链状态检查一批交易的输入，规则见UtxoSet.validate，不允许发行交易；交易也不能已在链上
+     * @param transactions 一批交易
+     * @throws IllegalArgumentException 第一个不合法的交易及原因
+     */
+    public synchronized void validateTransactions(Transaction[] transactions) {
+        validateTransactions(transactions, false);
+    }
+
+    private void validateTransactions(Transaction[] transactions, boolean issuance) {
+        for (Transaction transaction : transactions) {
+            if (transactionIndex.get(transaction.getTxHash()) != null) {
+                throw new IllegalArgumentException("transaction " + transaction.getTxHash()
+                        + " is already on the chain");
             }
         }
-        // 转化为数组形式返回
-        UTXO[] trueUtxos = new UTXO[trueUtxoSet.size()];
-        trueUtxoSet.toArray(trueUtxos);
-        return trueUtxos;
+        utxoSet.validate(transactions, issuance);
     }
 
-    public int getAllAccountAmount(){
+    /**
+     * @param walletAddress 钱包地址
+     * @return 该地址的余额，直接读取链状态中的地址索引
+     */
+    public synchronized int getBalance(String walletAddress){
+        return (int) utxoSet.getBalance(walletAddress);
+    }
+
+    /**
+     * @return 所有未使用的utxo的总额
+     */
+    public synchronized long getTotalAmount(){
+        return utxoSet.getTotalAmount();
+    }
+
+    /**
+     * 所有账户的余额之和，每个账户的余额直接读出，开销与链的长度无关
+     * @return
+     */
+    public synchronized int getAllAccountAmount(){
         int sumAmount = 0;
         for(int i = 0; i < accounts.size(); ++i){
-            UTXO[] trueUtxo = getTrueUtxos(accounts.get(i).getWalletAddress());
-            sumAmount += accounts.get(i).getAmount(trueUtxo);
+            sumAmount += getBalance(accounts.get(i).getWalletAddress());
         }
         return sumAmount;
     }
@@ -107,10 +231,192 @@ public class BlockChain {
     /**
      * 向区块链中添加新的满足难度条件的区块
      *
+     * 添加前会验证区块是否链接在最新区块之后、区块体是否已经上链、区块头中的Merkle根是否由区块体中的交易算出、
+     * 时间戳是否晚于getMinTimestamp且至多比当前时间晚MAX_FUTURE_BLOCK_TIME（难度调整依据时间戳计算），再由共识引擎验证区块的封装（如工作量证明）是否合法，最后按链状态检查区块中交易的输入（见UtxoSet.validate）；
+     * 区块中的交易不能已在链上，也不能是没有输入的发行交易；
+     * 区块哈希只覆盖区块头，校验Merkle根后工作量证明才能承诺区块中的交易
+     *
      * @param block 新的满足难度条件的区块
+     * @return 区块是否通过验证并被添加
      */
-    public void addNewBlock(Block block) {
-        blocks.offer(block);
+    public boolean addNewBlock(Block block) {
+        return addBlock(block, false);
+    }
+
+    /**
+     * 添加网络直接出块的发行区块，其中可以有没有输入的发行交易（如为新账户分配初始金额），其余检查同addNewBlock
+     *
+     * 只有持有挖矿锁写锁的调用（见MinerPeer.mine）才能添加发行区块，矿工从交易池打包的区块不能凭空产生金额
+     *
+     * @param block 新的满足难度条件的区块
+     * @return 区块是否通过验证并被添加
+     * @throws IllegalStateException 当前线程没有持有挖矿锁的写锁
+     */
+    public boolean addIssuanceBlock(Block block) {
+        if (!mineLock.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("issuance blocks need the write lock of the mine lock");
+        }
+        return addBlock(block, true);
+    }
+
+    private boolean addBlock(Block block, boolean issuance) {
+        synchronized (appendLock) {
+            int newHeight;
+            synchronized (this) {
+                BlockHeader blockHeader = block.getBlockHeader();
+                if (!getLatestBlock().getHash().equals(blockHeader.getPreBlockHash())) {
+                    System.out.println("block rejected: preBlockHash does not match the latest block");
+                    return false;
+                }
+                if (containsBlockBody(block.getBlockBody())) {
+                    System.out.println("block rejected: the block body is already on the chain");
+                    return false;
+                }
+                if (!merkleRootMatches(block)) {
+                    System.out.println("block rejected: merkleRootHash does not match the transactions");
+                    return false;
+                }
+                long timestamp = blockHeader.getTimestamp();
+                if (timestamp < getMinTimestamp()) {
+                    System.out.println("block rejected: timestamp " + timestamp
+                            + " is not later than the median of recent blocks");
+                    return false;
+                }
+                if (timestamp > currentTimeMillis() + MiniChainConfig.MAX_FUTURE_BLOCK_TIME) {
+                    System.out.println("block rejected: timestamp " + timestamp + " is too far in the future");
+                    return false;
+                }
+                if (!consensusEngine.verify(block, blocks.size(), this)) {
+                    return false;
+                }
+                try {
+                    validateTransactions(block.getBlockBody().getTransactions(), issuance);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("block rejected: " + e.getMessage());
+                    return false;
+                }
+                blocks.add(block);
+                if (blockStore != null) {
+                    blockStore.append(block);
+                }
+                transactionIndex.add(block, blocks.size() - 1);
+                utxoSet.apply(block);
+                height = blocks.size() - 1;
+                newHeight = height;
+            }
+            // 链状态只在持有appendLock时修改，写快照期间其他线程仍可查询余额和最新区块
+            if (MiniChainConfig.SNAPSHOT_DIR != null && newHeight % MiniChainConfig.SNAPSHOT_INTERVAL == 0) {
+                writeSnapshot(new File(MiniChainConfig.SNAPSHOT_DIR));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 由区块体中的交易重新计算Merkle根，不使用区块体自带的Merkle树，以免其与交易不符
+     * @param block 区块
+     * @return 区块头和区块体中的Merkle根是否都等于重新计算的根，没有交易时两者都应为null
+     */
+    private static boolean merkleRootMatches(Block block) {
+        Transaction[] transactions = block.getBlockBody().getTransactions();
+        Hash merkleRootHash = transactions.length == 0 ? null : MerkleTree.build(transactions).getRoot();
+        return Objects.equals(merkleRootHash, block.getBlockHeader().getMerkleRootHash())
+                && Objects.equals(merkleRootHash, block.getBlockBody().getMerkleRootHash());
+    }
+
+    /**
+     * 在最新区块的高度写入链状态的快照，只保留最新的两个快照，最新的快照损坏时仍可退回上一个
+     *
+     * 写入期间持有appendLock，链状态不会改变；不持有区块链对象的锁，不阻塞查询
+     * @param dir 快照目录
+     * @return 快照文件
+     */
+    public File writeSnapshot(File dir) {
+        synchronized (appendLock) {
+            Block latestBlock = getLatestBlock();
+            File file = null;
+            try {
+                file = UtxoSnapshot.write(dir, height, latestBlock.getHash(), utxoSet);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(-1);
+            }
+            UtxoSnapshot.prune(dir, 2);
+            return file;
+        }
+    }
+
+    /**
+     * 判断某区块体是否已经被打包进链上的区块：通过交易索引找到其第一笔交易所在的区块，比较两者的Merkle根，
+     * 无需另外保存所有上链区块体的Merkle根
+     * @param blockBody 区块体
+     * @return 是否已经上链
+     */
+    public synchronized boolean containsBlockBody(BlockBody blockBody) {
+        Transaction[] transactions = blockBody.getTransactions();
+        if (transactions.length == 0) {
+            return false;
+        }
+        TransactionIndex.Location location = transactionIndex.get(transactions[0].getTxHash());
+        return location != null && location.getPosition() == 0
+                && blocks.get(location.getHeight()).getBlockHeader().getMerkleRootHash()
+                        .equals(blockBody.getMerkleRootHash());
+    }
+
+    /**
+     * @return 挖矿锁，见MinerPeer.mine
+     */
+    public ReadWriteLock getMineLock() {
+        return mineLock;
+    }
+
+    /**
+     * @return 下一个区块允许的最小时间戳：最近MEDIAN_TIME_SPAN个区块时间戳的中位数加1
+     */
+    public synchronized long getMinTimestamp() {
+        int count = Math.min(MEDIAN_TIME_SPAN, blocks.size());
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; ++i) {
+            timestamps[i] = blocks.get(blocks.size() - 1 - i).getBlockHeader().getTimestamp();
+        }
+        Arrays.sort(timestamps);
+        return timestamps[count / 2] + 1;
+    }
+
+    /**
+     * 检查新区块的时间戳是否过于超前时使用的当前时间，测试中可覆盖
+     * @return 当前时间（毫秒）
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 无需加锁，供挖矿线程高频轮询
+     * @return 最新区块的高度，创世区块的高度为0
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 计算下一个区块应使用的目标值
+     *
+     * 每RETARGET_INTERVAL个区块，根据最近RETARGET_INTERVAL个出块间隔的实际用时调整一次目标值，
+     * 其余区块沿用最新区块的目标值，使出块间隔不随矿工算力的增减而大幅波动
+     *
+     * @return 紧凑格式的目标值
+     */
+    public synchronized int getNextBits() {
+        Block latestBlock = getLatestBlock();
+        int bits = latestBlock.getBlockHeader().getBits();
+        int height = blocks.size();
+        if (height <= MiniChainConfig.RETARGET_INTERVAL || height % MiniChainConfig.RETARGET_INTERVAL != 0) {
+            return bits;
+        }
+        long firstTimestamp = blocks.get(height - 1 - MiniChainConfig.RETARGET_INTERVAL).getBlockHeader().getTimestamp();
+        long lastTimestamp = latestBlock.getBlockHeader().getTimestamp();
+        return MinerUtil.retarget(bits, lastTimestamp - firstTimestamp);
     }
 
     /**
@@ -118,11 +424,54 @@ public class BlockChain {
      *
      * @return 区块链的最后一个区块
      */
-    public Block getLatestBlock() {
-        return blocks.peekLast();
+    public synchronized Block getLatestBlock() {
+        return blocks.get(blocks.size() - 1);
+    }
+
+    /**
+     * @param height 区块高度，创世区块的高度为0
+     * @return 该高度的区块
+     */
+    public synchronized Block getBlock(int height) {
+        return blocks.get(height);
+    }
+
+    /**
+     * 从最新区块向前查找，刚上链的区块只需比较一两次
+     * @param block 区块
+     * @return 该区块在链上的高度，不在链上时返回-1
+     */
+    public synchronized int heightOf(Block block) {
+        for (int i = blocks.size() - 1; i >= 0; --i) {
+            if (blocks.get(i) == block) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param txHash 交易哈希
+     * @return 交易所在区块的高度及其在区块中的位置，交易不在链上时返回null
+     */
+    public TransactionIndex.Location getTransactionLocation(Hash txHash) {
+        return transactionIndex.get(txHash);
+    }
+
+    /**
+     * 通过交易索引直接定位交易，无需遍历区块链
+     * @param txHash 交易哈希
+     * @return 链上的交易，不存在时返回null
+     */
+    public Transaction getTransaction(Hash txHash) {
+        TransactionIndex.Location location = transactionIndex.get(txHash);
+        if (location == null) {
+            return null;
+        }
+        return getBlock(location.getHeight()).getBlockBody().getTransactions()[location.getPosition()];
     }
 
-    public LinkedList<Block> getBlocks() {
+    public List<Block> getBlocks() {
         return blocks;
     }
 }
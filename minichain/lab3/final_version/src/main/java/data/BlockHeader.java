@@ -1,6 +1,12 @@
 package data;
 
-import config.MiniChainConfig;
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+import utils.MinerUtil;
+import utils.SecurityUtil;
+
+import java.util.Arrays;
 
 /**
  * 对区块头的抽象（参考比特币中的区块头结构），主要有以下字段：
@@ -12,36 +18,87 @@ import config.MiniChainConfig;
  *
  *    timestamp: 时间戳，创建区块头对象时会自动填充，无需提供该参数
  *
- *    difficulty: 挖矿难度，默认为系统配置中的难度值，无需提供该参数
+ *    bits: 紧凑格式的挖矿目标值（见utils.Target），默认由系统配置中的难度值换算得到
  *
  *    nonce: 随机字段，创建新的区块头对象时需要提供该参数
  *
+ *    signature: 权威证明共识下出块节点对二进制区块头的签名，其他共识下为空；签名的对象是定长的区块头编码，
+ *               签名本身不在其中，但参与区块哈希的计算（见hashBytes）
+ *
+ * 区块头可编码为定长的二进制形式（大端序），工作量证明只需对这88个字节进行哈希：
+ *    version(4) | preBlockHash(32) | merkleRootHash(32) | timestamp(8) | bits(4) | nonce(8)
+ * 存储和传输时在其后追加带长度前缀的签名（见encode）
+ *
  */
 public class BlockHeader {
 
+    public static final int HASH_SIZE = 32;
+    public static final int NONCE_OFFSET = 4 + HASH_SIZE + HASH_SIZE + 8 + 4;
+    public static final int HEADER_SIZE = NONCE_OFFSET + 8;
+
     private final int version = 1;
-    private final String preBlockHash;
-    private final String merkleRootHash;
+    private final Hash preBlockHash;
+    private final Hash merkleRootHash;
     private final long timestamp;
-    private final int difficulty = MiniChainConfig.DIFFICULTY;
+    private final int bits;
     private long nonce;
+    private byte[] signature;
+    // 每次修改nonce或签名时加1，区块据此判断缓存的区块哈希是否仍然有效
+    private int revision;
+
+    public BlockHeader(Hash preBlockHash, Hash merkleRootHash, long nonce) {
+        this(preBlockHash, merkleRootHash, MinerUtil.INIT_BITS, nonce);
+    }
 
-    public BlockHeader(String preBlockHash, String merkleRootHash, long nonce) {
+    public BlockHeader(Hash preBlockHash, Hash merkleRootHash, int bits, long nonce) {
         this.preBlockHash = preBlockHash;
         this.merkleRootHash = merkleRootHash;
         this.timestamp = System.currentTimeMillis();
+        this.bits = bits;
+        this.nonce = nonce;
+    }
+
+    /**
+     * 复制一个区块头，时间戳与原区块头保持一致，供多个挖矿线程各自修改nonce
+     * @param other 被复制的区块头
+     */
+    public BlockHeader(BlockHeader other) {
+        this(other, other.timestamp);
+    }
+
+    /**
+     * 复制一个区块头并替换时间戳，挖矿线程搜索完自己的nonce区间后以此得到一个新的区块头继续搜索
+     * @param other 被复制的区块头
+     * @param timestamp 新的时间戳
+     */
+    public BlockHeader(BlockHeader other, long timestamp) {
+        this.preBlockHash = other.preBlockHash;
+        this.merkleRootHash = other.merkleRootHash;
+        this.timestamp = timestamp;
+        this.bits = other.bits;
+        this.nonce = other.nonce;
+        this.signature = other.signature;
+    }
+
+    private BlockHeader(Hash preBlockHash, Hash merkleRootHash, long timestamp, int bits, long nonce,
+                        byte[] signature) {
+        this.preBlockHash = preBlockHash;
+        this.merkleRootHash = merkleRootHash;
+        this.timestamp = timestamp;
+        this.bits = bits;
         this.nonce = nonce;
+        this.signature = signature;
     }
 
     public int getVersion() {
         return version;
     }
 
-    public String getPreBlockHash() {
+    public Hash getPreBlockHash() {
         return preBlockHash;
     }
 
-    public String getMerkleRootHash() {
+    public Hash getMerkleRootHash() {
         return merkleRootHash;
     }
 
@@ -49,8 +106,8 @@ public class BlockHeader {
         return timestamp;
     }
 
-    public int getDifficulty() {
-        return difficulty;
+    public int getBits() {
+        return bits;
     }
 
     public long getNonce() {
@@ -59,6 +116,115 @@ public class BlockHeader {
 
     public void setNonce(long nonce) {
         this.nonce = nonce;
+        ++revision;
+    }
+
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    public void setSignature(byte[] signature) {
+        this.signature = signature;
+        ++revision;
+    }
+
+    int getRevision() {
+        return revision;
+    }
+
+    /**
+     * 将区块头编码为定长的二进制形式
+     * @return 长度为HEADER_SIZE的字节数组
+     */
+    public byte[] toBytes() {
+        byte[] buffer = new byte[HEADER_SIZE];
+        writeTo(buffer);
+        return buffer;
+    }
+
+    /**
+     * 区块哈希的原像：没有签名时即定长的区块头编码，工作量证明据此挖矿；
+     * 有签名时为完整编码（定长编码 | 带长度的签名），下一区块的preBlockHash因此同时承诺了出块节点的签名
+     * @return 参与区块哈希计算的字节
+     */
+    public byte[] hashBytes() {
+        if (signature == null) {
+            return toBytes();
+        }
+        BinaryWriter writer = new BinaryWriter(HEADER_SIZE + 1 + signature.length);
+        encode(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 将区块头编码写入给定的缓冲区，哈希值为空（如创世区块）时以全0填充
+     * @param buffer 长度至少为HEADER_SIZE的缓冲区
+     */
+    public void writeTo(byte[] buffer) {
+        writeInt(buffer, 0, version);
+        writeHash(buffer, 4, preBlockHash);
+        writeHash(buffer, 4 + HASH_SIZE, merkleRootHash);
+        writeLong(buffer, 4 + HASH_SIZE * 2, timestamp);
+        writeInt(buffer, 4 + HASH_SIZE * 2 + 8, bits);
+        writeLong(buffer, NONCE_OFFSET, nonce);
+    }
+
+    /**
+     * 只改写编码中的nonce字段，挖矿时每次尝试无需重新编码整个区块头
+     * @param buffer 已写入区块头编码的缓冲区
+     * @param nonce 新的nonce
+     */
+    public static void writeNonce(byte[] buffer, long nonce) {
+        writeLong(buffer, NONCE_OFFSET, nonce);
+    }
+
+    /**
+     * 完整的二进制编码：88字节的区块头编码 | 签名（带长度，无签名时长度为0）
+     * @param writer 编码器
+     */
+    public void encode(BinaryWriter writer) {
+        writer.writeInt(version);
+        writer.writeHash(preBlockHash);
+        writer.writeHash(merkleRootHash);
+        writer.writeLong(timestamp);
+        writer.writeInt(bits);
+        writer.writeLong(nonce);
+        writer.writeVarBytes(signature);
+    }
+
+    public static BlockHeader decode(BinaryReader reader) {
+        int version = reader.readInt();
+        if (version != 1) {
+            throw new IllegalArgumentException("unsupported block header version " + version);
+        }
+        Hash preBlockHash = reader.readHash();
+        Hash merkleRootHash = reader.readHash();
+        long timestamp = reader.readLong();
+        int bits = reader.readInt();
+        long nonce = reader.readLong();
+        return new BlockHeader(preBlockHash, merkleRootHash, timestamp, bits, nonce, reader.readVarBytes());
+    }
+
+    private static void writeHash(byte[] buffer, int offset, Hash hash) {
+        if (hash == null) {
+            Arrays.fill(buffer, offset, offset + HASH_SIZE, (byte) 0);
+        } else {
+            hash.writeTo(buffer, offset);
+        }
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        for (int i = 3; i >= 0; --i) {
+            buffer[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void writeLong(byte[] buffer, int offset, long value) {
+        for (int i = 7; i >= 0; --i) {
+            buffer[offset + i] = (byte) value;
+            value >>>= 8;
+        }
     }
 
     @Override
@@ -68,8 +234,9 @@ public class BlockHeader {
                 ", preBlockHash='" + preBlockHash + '\'' +
                 ", merkleRootHash='" + merkleRootHash + '\'' +
                 ", timestamp=" + timestamp +
-                ", difficulty=" + difficulty +
+                ", bits=0x" + Integer.toHexString(bits) +
                 ", nonce=" + nonce +
+                (signature != null ? ", signature=" + SecurityUtil.bytes2HexString(signature) : "") +
                 '}';
     }
 }
@@ -0,0 +1,92 @@
+package data;
+
+import utils.BinaryReader;
+import utils.BinaryWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 区块链的持久化文件，每个区块上链时追加一条记录：区块编码的长度（变长整数） | 区块的完整编码（见Block.encode）
+ *
+ * 启动时按顺序读回整条区块链，链状态快照和交易索引文件在重启后才能与链上的区块对应；
+ * 末尾写了一半的记录（如进程在写入时退出）或与前一区块链接不上的记录连同其后的内容一起截掉
+ */
+public class BlockStore {
+
+    private final File file;
+
+    /**
+     * @param file 区块文件，不存在时在第一次追加时创建
+     */
+    public BlockStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 读回文件中的区块
+     * @return 区块链，下标即区块高度；文件不存在时返回空列表
+     */
+    public List<Block> load() {
+        List<Block> blocks = new ArrayList<>();
+        if (!file.exists()) {
+            return blocks;
+        }
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            BinaryReader reader = new BinaryReader(data);
+            int valid = 0;
+            while (reader.remaining() > 0) {
+                Block block;
+                try {
+                    BinaryReader record = new BinaryReader(reader.readBytes(reader.readLength()));
+                    block = Block.decode(record);
+                    if (record.remaining() != 0) {
+                        throw new IllegalArgumentException("trailing bytes in block record");
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.out.println("truncate block file at height " + blocks.size() + ": " + e.getMessage());
+                    break;
+                }
+                if (!blocks.isEmpty() && !blocks.get(blocks.size() - 1).getHash()
+                        .equals(block.getBlockHeader().getPreBlockHash())) {
+                    System.out.println("truncate block file at height " + blocks.size()
+                            + ": preBlockHash does not match the previous block");
+                    break;
+                }
+                blocks.add(block);
+                valid = data.length - reader.remaining();
+            }
+            if (valid < data.length) {
+                try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                    randomAccessFile.setLength(valid);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        return blocks;
+    }
+
+    /**
+     * 在文件末尾追加一个区块
+     * @param block 新上链的区块
+     */
+    public void append(Block block) {
+        BinaryWriter writer = new BinaryWriter(1024);
+        writer.writeVarBytes(block.toBytes());
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            writer.writeTo(out);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+}
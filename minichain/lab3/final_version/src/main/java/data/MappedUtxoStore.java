@@ -0,0 +1,312 @@
+package data;
+
+import utils.Hash;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+/**
+ * 保存在内存映射文件中的utxo，数据位于堆外，utxo数量再多也不会增加垃圾回收的负担
+ *
+ * 文件是一张开放寻址（线性探测）的哈希表，以输出位置为键，每条记录定长64字节：
+ * 状态（1字节） | 保留（3字节） | 下标（4字节） | 交易哈希（32字节） | 金额（4字节） | 公钥哈希（20字节）
+ *
+ * 删除的记录标记为墓碑，探测时跳过，插入时复用；记录（含墓碑）超过容量的3/4时重建，
+ * utxo较多时容量翻倍，否则只清理墓碑；文件按2^24条记录（1GB）分段映射
+ *
+ * 重建时在file与file.rehash之间交替：先映射另一个文件并搬入所有记录，切换到新的映射后才删除旧文件，
+ * 不会替换仍被映射的文件
+ *
+ * 记录中不保存钱包地址，取出的utxo由公钥哈希重新计算地址（见Account.walletAddress），
+ * 因此只接受钱包地址与公钥哈希一致、公钥哈希为20字节的utxo（见check）；文件只作为运行时的存储，打开时清空
+ */
+public class MappedUtxoStore implements UtxoStore {
+
+    private static final int RECORD_SIZE = 64;
+    private static final int STATE = 0;
+    private static final int INDEX = 4;
+    private static final int TX_HASH = 8;
+    private static final int AMOUNT = 40;
+    private static final int PUBLIC_KEY_HASH = 44;
+    private static final int PUBLIC_KEY_HASH_SIZE = 20;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    private static final int SEGMENT_SHIFT = 24;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+    private static final int MIN_CAPACITY = 1 << 10;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final File file;
+    private final File rehashFile;
+    // 当前映射的文件，file或rehashFile
+    private File current;
+    private MappedByteBuffer[] segments;
+    private int capacity;
+    private int size;
+    private int deleted;
+
+    /**
+     * @param file 映射的文件，已有的同名文件会被清空
+     */
+    public MappedUtxoStore(File file) {
+        this(file, MIN_CAPACITY);
+    }
+
+    /**
+     * @param file 映射的文件，已有的同名文件会被清空
+     * @param expectedSize 预计的utxo个数，预先分配足够的容量以免重建
+     */
+    public MappedUtxoStore(File file, int expectedSize) {
+        this.file = file;
+        this.rehashFile = new File(file.getPath() + ".rehash");
+        this.current = file;
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity / 4 * 3 <= expectedSize) {
+            capacity <<= 1;
+        }
+        try {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(rehashFile.toPath());
+            this.segments = map(file, capacity);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 创建长度为capacity条记录的文件并分段映射，新文件的内容全为0，即所有记录为空
+     */
+    private static MappedByteBuffer[] map(File file, int capacity) throws IOException {
+        long length = (long) capacity * RECORD_SIZE;
+        long segmentLength = (long) RECORD_SIZE << SEGMENT_SHIFT;
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + segmentLength - 1) / segmentLength)];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length);
+            FileChannel channel = randomAccessFile.getChannel();
+            for (int i = 0; i < segments.length; ++i) {
+                long position = i * segmentLength;
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                        Math.min(segmentLength, length - position));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @param hashCode 输出位置的哈希码
+     * @return 探测的起始记录，对哈希码再做一次混合，避免相邻的下标聚集
+     */
+    private static int slot(int hashCode, int capacity) {
+        int h = hashCode * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+    /**
+     * @return 输出位置的交易哈希，按4个long比较；每次调用新建，多个线程可以同时查询
+     */
+    private static long[] key(OutPoint outPoint) {
+        byte[] keyBytes = new byte[Hash.SIZE];
+        long[] key = new long[Hash.SIZE / 8];
+        outPoint.getTxHash().writeTo(keyBytes, 0);
+        for (int i = 0; i < key.length; ++i) {
+            long value = 0;
+            for (int j = 0; j < 8; ++j) {
+                value = (value << 8) | (keyBytes[i * 8 + j] & 0xff);
+            }
+            key[i] = value;
+        }
+        return key;
+    }
+
+    /**
+     * @param key 输出位置的交易哈希，见key
+     * @return 与输出位置相同的记录的序号，不存在时返回-1
+     */
+    private int find(OutPoint outPoint, long[] key) {
+        int index = outPoint.getIndex();
+        for (int slot = slot(outPoint.hashCode(), capacity); ; slot = (slot + 1) & (capacity - 1)) {
+            MappedByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+            int offset = (slot & SEGMENT_MASK) * RECORD_SIZE;
+            byte state = segment.get(offset + STATE);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == USED && segment.getInt(offset + INDEX) == index
+                    && segment.getLong(offset + TX_HASH) == key[0]
+                    && segment.getLong(offset + TX_HASH + 8) == key[1]
+                    && segment.getLong(offset + TX_HASH + 16) == key[2]
+                    && segment.getLong(offset + TX_HASH + 24) == key[3]) {
+                return slot;
+            }
+        }
+    }
+
+    private UTXO read(int slot) {
+        MappedByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+        int offset = (slot & SEGMENT_MASK) * RECORD_SIZE;
+        byte[] publicKeyHash = new byte[PUBLIC_KEY_HASH_SIZE];
+        for (int i = 0; i < publicKeyHash.length; ++i) {
+            publicKeyHash[i] = segment.get(offset + PUBLIC_KEY_HASH + i);
+        }
+        return new UTXO(segment.getInt(offset + AMOUNT), publicKeyHash);
+    }
+
+    /**
+     * 写入一条记录
+     */
+    private void write(int slot, long[] key, int index, UTXO utxo) {
+        MappedByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+        int offset = (slot & SEGMENT_MASK) * RECORD_SIZE;
+        segment.put(offset + STATE, USED);
+        segment.putInt(offset + INDEX, index);
+        for (int i = 0; i < key.length; ++i) {
+            segment.putLong(offset + TX_HASH + i * 8, key[i]);
+        }
+        segment.putInt(offset + AMOUNT, utxo.getAmount());
+        byte[] publicKeyHash = utxo.getPublicKeyHash();
+        for (int i = 0; i < PUBLIC_KEY_HASH_SIZE; ++i) {
+            segment.put(offset + PUBLIC_KEY_HASH + i, publicKeyHash[i]);
+        }
+    }
+
+    @Override
+    public UTXO get(OutPoint outPoint) {
+        int slot = find(outPoint, key(outPoint));
+        return slot < 0 ? null : read(slot);
+    }
+
+    @Override
+    public void check(UTXO utxo) {
+        String problem = problem(utxo);
+        if (problem != null) {
+            throw new IllegalArgumentException(problem);
+        }
+    }
+
+    /**
+     * @return utxo无法保存的原因，可以保存时返回null
+     */
+    private static String problem(UTXO utxo) {
+        if (utxo.getPublicKeyHash().length != PUBLIC_KEY_HASH_SIZE) {
+            return "public key hash needs " + PUBLIC_KEY_HASH_SIZE + " bytes";
+        }
+        // 取出时由公钥哈希重新计算地址，地址不一致的utxo取出后会变成另一个地址的
+        if (!utxo.getWalletAddress().equals(Account.walletAddress(utxo.getPublicKeyHash()))) {
+            return "wallet address " + utxo.getWalletAddress() + " does not match the public key hash";
+        }
+        return null;
+    }
+
+    @Override
+    public boolean put(OutPoint outPoint, UTXO utxo) {
+        // 调用方已在修改状态前检查过，见UtxoSet.validate
+        assert problem(utxo) == null : problem(utxo);
+        long[] key = key(outPoint);
+        int slot = find(outPoint, key);
+        if (slot >= 0) {
+            write(slot, key, outPoint.getIndex(), utxo);
+            return false;
+        }
+        if (size + deleted + 1 > capacity / 4 * 3) {
+            rehash(size + 1 > capacity / 2 ? capacity << 1 : capacity);
+        }
+        // 复用探测路径上的第一个空记录或墓碑
+        for (slot = slot(outPoint.hashCode(), capacity); ; slot = (slot + 1) & (capacity - 1)) {
+            byte state = segments[slot >>> SEGMENT_SHIFT].get((slot & SEGMENT_MASK) * RECORD_SIZE + STATE);
+            if (state != USED) {
+                if (state == DELETED) {
+                    --deleted;
+                }
+                break;
+            }
+        }
+        write(slot, key, outPoint.getIndex(), utxo);
+        ++size;
+        return true;
+    }
+
+    @Override
+    public UTXO remove(OutPoint outPoint) {
+        int slot = find(outPoint, key(outPoint));
+        if (slot < 0) {
+            return null;
+        }
+        UTXO utxo = read(slot);
+        segments[slot >>> SEGMENT_SHIFT].put((slot & SEGMENT_MASK) * RECORD_SIZE + STATE, DELETED);
+        --size;
+        ++deleted;
+        return utxo;
+    }
+
+    /**
+     * 把所有记录搬到容量为newCapacity的另一个文件中，切换到新的映射后删除原文件
+     */
+    private void rehash(int newCapacity) {
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IllegalStateException("utxo store is full");
+        }
+        File newFile = current == file ? rehashFile : file;
+        try {
+            Files.deleteIfExists(newFile.toPath());
+            MappedByteBuffer[] newSegments = map(newFile, newCapacity);
+            for (int slot = 0; slot < capacity; ++slot) {
+                MappedByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+                int offset = (slot & SEGMENT_MASK) * RECORD_SIZE;
+                if (segment.get(offset + STATE) != USED) {
+                    continue;
+                }
+                // 输出位置的哈希码：交易哈希的前4个字节（见Hash.hashCode） * 31 + 下标
+                int hashCode = segment.getInt(offset + TX_HASH) * 31 + segment.getInt(offset + INDEX);
+                int newSlot = slot(hashCode, newCapacity);
+                while (newSegments[newSlot >>> SEGMENT_SHIFT].get((newSlot & SEGMENT_MASK) * RECORD_SIZE + STATE) != EMPTY) {
+                    newSlot = (newSlot + 1) & (newCapacity - 1);
+                }
+                MappedByteBuffer newSegment = newSegments[newSlot >>> SEGMENT_SHIFT];
+                int newOffset = (newSlot & SEGMENT_MASK) * RECORD_SIZE;
+                for (int i = 0; i < RECORD_SIZE; i += 8) {
+                    newSegment.putLong(newOffset + i, segment.getLong(offset + i));
+                }
+            }
+            segments = newSegments;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        // 旧的映射在被回收前仍然有效，有的系统不允许删除仍被映射的文件，此时留到退出时删除
+        File oldFile = current;
+        current = newFile;
+        if (!oldFile.delete()) {
+            oldFile.deleteOnExit();
+        }
+        capacity = newCapacity;
+        deleted = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 哈希表的记录数
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 当前映射的文件，重建后在构造时给定的文件与其.rehash文件之间切换
+     */
+    public File getFile() {
+        return current;
+    }
+}
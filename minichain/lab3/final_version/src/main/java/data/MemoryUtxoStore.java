@@ -0,0 +1,36 @@
+package data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 保存在堆内哈希表中的utxo
+ */
+public class MemoryUtxoStore implements UtxoStore {
+
+    private final Map<OutPoint, UTXO> utxos = new HashMap<>();
+
+    @Override
+    public UTXO get(OutPoint outPoint) {
+        return utxos.get(outPoint);
+    }
+
+    @Override
+    public void check(UTXO utxo) {
+    }
+
+    @Override
+    public boolean put(OutPoint outPoint, UTXO utxo) {
+        return utxos.put(outPoint, utxo) == null;
+    }
+
+    @Override
+    public UTXO remove(OutPoint outPoint) {
+        return utxos.remove(outPoint);
+    }
+
+    @Override
+    public int size() {
+        return utxos.size();
+    }
+}
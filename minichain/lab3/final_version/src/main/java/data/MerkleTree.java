@@ -0,0 +1,284 @@
+package data;
+
+import config.MiniChainConfig;
+import spv.Proof;
+import utils.CryptoContext;
+import utils.Hash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 区块体中交易的Merkle树，组装区块体时构建一次，之后随区块体保存
+ *
+ * 所有层的节点哈希依次存放在一个扁平的字节数组中：先是各交易哈希（叶子层），再是上一层，最后是根，每个节点占32字节；
+ * 某一层节点个数为奇数时，最后一个节点与自身拼接得到父节点
+ *
+ * 第level层第i个节点的兄弟节点即下标为i ^ 1的节点（不存在时为其自身），父节点为上一层的第i / 2个节点，
+ * 因此交易的验证路径只需按下标逐层取出兄弟节点，无需任何哈希计算
+ *
+ * 同一层的各个父节点互不依赖，交易较多（见MiniChainConfig.PARALLEL_MERKLE_THRESHOLD）时交易哈希和每一层都拆分成若干段
+ * 在ForkJoin线程池上并行计算，每个节点写入数组中固定的位置，因此结果与顺序计算逐字节相同
+ */
+public class MerkleTree {
+
+    // 并行计算时每个任务至多负责的节点个数
+    private static final int SPLIT_SIZE = 512;
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private final byte[] nodes;
+    // 每一层第一个节点的序号，最后一项为节点总数
+    private final int[] levelStart;
+    private final Hash root;
+
+    private MerkleTree(byte[] nodes, int[] levelStart) {
+        this.nodes = nodes;
+        this.levelStart = levelStart;
+        this.root = Hash.of(nodes, (levelStart[levelStart.length - 1] - 1) * Hash.SIZE);
+    }
+
+    /**
+     * @param transactions 区块中的交易，至少一笔
+     * @return 以各交易哈希为叶子的Merkle树
+     */
+    public static MerkleTree build(Transaction[] transactions) {
+        boolean parallel = useParallel(transactions.length);
+        Hash[] leaves = new Hash[transactions.length];
+        if (parallel) {
+            POOL.invoke(new LeafTask(transactions, leaves, 0, leaves.length));
+        } else {
+            for (int i = 0; i < leaves.length; ++i) {
+                leaves[i] = transactions[i].getTxHash();
+            }
+        }
+        return build(leaves, parallel);
+    }
+
+    /**
+     * @param leaves 叶子节点的哈希，至少一个
+     * @return Merkle树
+     */
+    public static MerkleTree build(Hash[] leaves) {
+        return build(leaves, useParallel(leaves.length));
+    }
+
+    /**
+     * 只有一个CPU时并行没有收益，始终顺序计算
+     */
+    private static boolean useParallel(int leafCount) {
+        return leafCount >= MiniChainConfig.PARALLEL_MERKLE_THRESHOLD && POOL.getParallelism() > 1;
+    }
+
+    /**
+     * @param leaves 叶子节点的哈希，至少一个
+     * @param parallel 是否并行计算各层
+     * @return Merkle树
+     */
+    public static MerkleTree build(Hash[] leaves, boolean parallel) {
+        if (leaves.length == 0) {
+            throw new IllegalArgumentException("merkle tree needs at least one leaf");
+        }
+        int[] levelStart = levelStart(leaves.length);
+        byte[] nodes = new byte[levelStart[levelStart.length - 1] * Hash.SIZE];
+        for (int i = 0; i < leaves.length; ++i) {
+            leaves[i].writeTo(nodes, i * Hash.SIZE);
+        }
+        for (int level = 1; level < levelStart.length - 1; ++level) {
+            int count = levelStart[level + 1] - levelStart[level];
+            if (parallel && count > SPLIT_SIZE) {
+                POOL.invoke(new LevelTask(nodes, levelStart, level, 0, count));
+            } else {
+                hashLevel(nodes, levelStart, level, 0, count);
+            }
+        }
+        return new MerkleTree(nodes, levelStart);
+    }
+
+    /**
+     * 计算某一层中下标在[from, to)内的节点
+     */
+    private static void hashLevel(byte[] nodes, int[] levelStart, int level, int from, int to) {
+        CryptoContext context = CryptoContext.get();
+        int childStart = levelStart[level - 1];
+        int childCount = levelStart[level] - childStart;
+        int start = levelStart[level];
+        for (int i = from; i < to; ++i) {
+            int left = (childStart + 2 * i) * Hash.SIZE;
+            int out = (start + i) * Hash.SIZE;
+            if (2 * i + 1 < childCount) {
+                // 左右子节点在数组中相邻，直接对这64个字节求哈希
+                context.sha256(nodes, left, Hash.SIZE * 2, nodes, out);
+            } else {
+                // 奇数个节点时最后一个节点与自身拼接，把同一段32字节送入摘要两次
+                context.sha256Pair(nodes, left, left, nodes, out);
+            }
+        }
+    }
+
+    private static class LeafTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Transaction[] transactions;
+        private final Hash[] leaves;
+        private final int from;
+        private final int to;
+
+        LeafTask(Transaction[] transactions, Hash[] leaves, int from, int to) {
+            this.transactions = transactions;
+            this.leaves = leaves;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_SIZE) {
+                for (int i = from; i < to; ++i) {
+                    leaves[i] = transactions[i].getTxHash();
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LeafTask(transactions, leaves, from, middle), new LeafTask(transactions, leaves, middle, to));
+        }
+    }
+
+    private static class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] nodes;
+        private final int[] levelStart;
+        private final int level;
+        private final int from;
+        private final int to;
+
+        LevelTask(byte[] nodes, int[] levelStart, int level, int from, int to) {
+            this.nodes = nodes;
+            this.levelStart = levelStart;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_SIZE) {
+                hashLevel(nodes, levelStart, level, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LevelTask(nodes, levelStart, level, from, middle),
+                    new LevelTask(nodes, levelStart, level, middle, to));
+        }
+    }
+
+    /**
+     * @param leafCount 叶子个数
+     * @return 每一层第一个节点的序号，最后一项为节点总数
+     */
+    private static int[] levelStart(int leafCount) {
+        List<Integer> starts = new ArrayList<>();
+        int start = 0;
+        int count = leafCount;
+        while (true) {
+            starts.add(start);
+            start += count;
+            if (count == 1) {
+                break;
+            }
+            count = (count + 1) / 2;
+        }
+        starts.add(start);
+        int[] result = new int[starts.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    public Hash getRoot() {
+        return root;
+    }
+
+    public int getLeafCount() {
+        return levelStart[1];
+    }
+
+    /**
+     * @return 层数，只有一个叶子时为1
+     */
+    public int getLevels() {
+        return levelStart.length - 1;
+    }
+
+    /**
+     * @param level 层号，叶子层为0
+     * @param index 节点在该层中的下标
+     * @return 节点的哈希
+     */
+    public Hash getNode(int level, int index) {
+        if (index < 0 || index >= levelStart[level + 1] - levelStart[level]) {
+            throw new IllegalArgumentException("no node " + index + " at level " + level);
+        }
+        return Hash.of(nodes, (levelStart[level] + index) * Hash.SIZE);
+    }
+
+    /**
+     * 取出某个叶子到根的验证路径
+     * @param leafIndex 叶子的下标，即交易在区块中的位置
+     * @return 自底向上的兄弟节点及其偏向
+     */
+    public List<Proof.Node> getPath(int leafIndex) {
+        List<Proof.Node> path = new ArrayList<>(getLevels() - 1);
+        int index = leafIndex;
+        for (int level = 0; level < getLevels() - 1; ++level) {
+            int count = levelStart[level + 1] - levelStart[level];
+            if ((index & 1) == 0) {
+                int sibling = index + 1 < count ? index + 1 : index;
+                path.add(new Proof.Node(getNode(level, sibling), Proof.Orientation.RIGHT));
+            } else {
+                path.add(new Proof.Node(getNode(level, index - 1), Proof.Orientation.LEFT));
+            }
+            index >>>= 1;
+        }
+        return path;
+    }
+
+    /**
+     * 取出多个叶子共同的验证路径，顺序与MultiProof的约定一致：自底向上逐层，同层按下标升序，
+     * 待验证叶子本身及能由它们算出的节点都不包含在内
+     * @param leafIndexes 叶子的下标，升序且不重复
+     * @return 验证所需的其余节点
+     */
+    public List<Hash> getMultiPath(int[] leafIndexes) {
+        int[] indexes = leafIndexes.clone();
+        int n = indexes.length;
+        for (int i = 0; i < n; ++i) {
+            if (indexes[i] < 0 || indexes[i] >= getLeafCount() || (i > 0 && indexes[i] <= indexes[i - 1])) {
+                throw new IllegalArgumentException("leaf indexes must be ascending and in range");
+            }
+        }
+        List<Hash> hashes = new ArrayList<>();
+        for (int level = 0; level < getLevels() - 1; ++level) {
+            int count = levelStart[level + 1] - levelStart[level];
+            int m = 0;
+            for (int i = 0; i < n; ++i) {
+                int index = indexes[i];
+                if ((index & 1) == 0) {
+                    if (i + 1 < n && indexes[i + 1] == index + 1) {
+                        ++i;
+                    } else if (index + 1 < count) {
+                        hashes.add(getNode(level, index + 1));
+                    }
+                } else {
+                    hashes.add(getNode(level, index - 1));
+                }
+                indexes[m++] = index >>> 1;
+            }
+            n = m;
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,93 @@
+package data;
+
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+
+/**
+ * 交易输出的位置：所在交易的哈希及其在outUtxos中的下标，链上每个utxo的唯一标识
+ *
+ * 交易的输入只引用被花费输出的位置，定长编码为36字节：交易哈希（32字节） | 下标（4字节）；
+ * 哈希码由交易哈希的哈希码和下标在创建时算好，适合作为各类索引的键
+ */
+public final class OutPoint {
+
+    public static final int SIZE = Hash.SIZE + 4;
+
+    private final Hash txHash;
+    private final int index;
+    private final int hashCode;
+
+    public OutPoint(Hash txHash, int index) {
+        this.txHash = txHash;
+        this.index = index;
+        this.hashCode = txHash.hashCode() * 31 + index;
+    }
+
+    public Hash getTxHash() {
+        return txHash;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void encode(BinaryWriter writer) {
+        writer.writeHash(txHash);
+        writer.writeInt(index);
+    }
+
+    public static OutPoint decode(BinaryReader reader) {
+        Hash txHash = reader.readHash();
+        if (txHash == null) {
+            throw new IllegalArgumentException("outpoint needs a transaction hash");
+        }
+        int index = reader.readInt();
+        if (index < 0) {
+            throw new IllegalArgumentException("invalid outpoint index " + index);
+        }
+        return new OutPoint(txHash, index);
+    }
+
+    /**
+     * 编码输出位置数组：个数（变长整数）后依次为每个位置的编码
+     * @param outPoints 输出位置数组
+     * @param writer 编码器
+     */
+    public static void encodeAll(OutPoint[] outPoints, BinaryWriter writer) {
+        writer.writeVarInt(outPoints.length);
+        for (OutPoint outPoint : outPoints) {
+            outPoint.encode(writer);
+        }
+    }
+
+    public static OutPoint[] decodeAll(BinaryReader reader) {
+        OutPoint[] outPoints = new OutPoint[reader.readLength()];
+        for (int i = 0; i < outPoints.length; ++i) {
+            outPoints[i] = decode(reader);
+        }
+        return outPoints;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OutPoint)) {
+            return false;
+        }
+        OutPoint other = (OutPoint) o;
+        return index == other.index && txHash.equals(other.txHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return txHash + ":" + index;
+    }
+}
@@ -1,5 +1,8 @@
 package data;
 
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
 import utils.SecurityUtil;
 
 import java.security.PublicKey;
@@ -7,26 +10,47 @@ import java.util.Arrays;
 
 /**
  * 对交易的抽象
+ *
+ * 交易的规范二进制编码（见encode）决定了交易哈希，交易签名覆盖的inputs和outUtxos也使用同样的编码
+ *
+ * 交易的输入只是被花费的输出的位置（OutPoint），被花费的utxo本身由链状态查出
  */
 public class Transaction {
 
-    private final UTXO[] inUtxos;
+    /**
+     * 交易编码的格式版本，解码时遇到不支持的版本直接拒绝
+     */
+    public static final int VERSION = 2;
+
+    private final OutPoint[] inputs;
     private final UTXO[] outUtxos;
 
     private final byte[] sendSign;  // 交易发送方的私钥签名
     private final PublicKey sendPublicKey;  // 交易发送方的公钥，方便矿工和其他节点进行验签，确保交易违背篡改
     private final long timestamp;
+    // 交易哈希，第一次访问时计算；交易的字段均不再改变，多线程同时访问时至多重复计算一次
+    private Hash txHash;
+    // 签名摘要，同样只计算一次
+    private Hash sigHash;
 
-    public Transaction(UTXO[] inUtxos, UTXO[] outUtxos, byte[] sendSign, PublicKey sendPublicKey, long timestamp){
-        this.inUtxos = inUtxos;
+    public Transaction(OutPoint[] inputs, UTXO[] outUtxos, byte[] sendSign, PublicKey sendPublicKey, long timestamp){
+        this.inputs = inputs;
         this.outUtxos = outUtxos;
         this.sendSign = sendSign;
         this.sendPublicKey = sendPublicKey;
         this.timestamp = timestamp;
     }
 
-    public UTXO[] getInUtxos() {
-        return inUtxos;
+    public OutPoint[] getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @param index 输出的下标
+     * @return 该交易第index个输出的位置
+     */
+    public OutPoint getOutPoint(int index) {
+        return new OutPoint(getTxHash(), index);
     }
 
     public UTXO[] getOutUtxos() {
@@ -45,10 +69,69 @@ public class Transaction {
         return timestamp;
     }
 
+    /**
+     * 二进制编码：版本（变长整数） | inputs | outUtxos | 签名（带长度） | 公钥的X.509编码（带长度） | 时间戳（变长整数）
+     * @param writer 编码器
+     */
+    public void encode(BinaryWriter writer) {
+        writer.writeVarInt(VERSION);
+        OutPoint.encodeAll(inputs, writer);
+        UTXO.encodeAll(outUtxos, writer);
+        writer.writeVarBytes(sendSign);
+        writer.writeVarBytes(sendPublicKey.getEncoded());
+        writer.writeVarInt(timestamp);
+    }
+
+    public static Transaction decode(BinaryReader reader) {
+        long version = reader.readVarInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported transaction version " + version);
+        }
+        OutPoint[] inputs = OutPoint.decodeAll(reader);
+        UTXO[] outUtxos = UTXO.decodeAll(reader);
+        byte[] sendSign = reader.readVarBytes();
+        PublicKey sendPublicKey = SecurityUtil.decodePublicKey(reader.readVarBytes());
+        long timestamp = reader.readVarInt();
+        return new Transaction(inputs, outUtxos, sendSign, sendPublicKey, timestamp);
+    }
+
+    /**
+     * @return 交易的二进制编码
+     */
+    public byte[] toBytes() {
+        BinaryWriter writer = new BinaryWriter();
+        encode(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * @return 交易哈希，即交易二进制编码的SHA256，只在第一次调用时计算
+     */
+    public Hash getTxHash() {
+        Hash hash = txHash;
+        if (hash == null) {
+            hash = Hash.sha256(toBytes());
+            txHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * @return 交易签名覆盖的摘要，即inputs和outUtxos编码的SHA256（见SecurityUtil.sigHash），只在第一次调用时计算
+     */
+    public Hash getSigHash() {
+        Hash hash = sigHash;
+        if (hash == null) {
+            hash = SecurityUtil.sigHash(inputs, outUtxos);
+            sigHash = hash;
+        }
+        return hash;
+    }
+
     @Override
     public String toString() {
         return "\nTransaction{" +
-                "\ninUtxos=" + Arrays.toString(inUtxos) +
+                "\ninputs=" + Arrays.toString(inputs) +
                 ", \noutUtxos=" + Arrays.toString(outUtxos) +
                 ", \nsendSign=" + SecurityUtil.bytes2HexString(sendSign) +
                 ", \nsendPublicKey=" + SecurityUtil.bytes2HexString(sendPublicKey.getEncoded()) +
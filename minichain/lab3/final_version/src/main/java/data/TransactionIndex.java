@@ -0,0 +1,161 @@
+package data;
+
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 交易索引：交易哈希 -> (所在区块的高度, 在区块中的位置)
+ *
+ * 区块上链时由BlockChain逐块追加，查找交易和提取验证路径都无需遍历区块链；查询可与追加并发进行
+ *
+ * 可选地同时写入一个追加式的索引文件，每条记录为：交易哈希（32字节） | 高度（变长整数） | 位置（变长整数），
+ * 每个区块的记录一次写出；打开已有的索引文件时先载入其中的记录，再接着追加，重启后只需索引文件之后的区块
+ */
+public class TransactionIndex {
+
+    /**
+     * 交易在链上的位置
+     */
+    public static class Location {
+        private final int height;
+        private final int position;
+
+        public Location(int height, int position) {
+            this.height = height;
+            this.position = position;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+    }
+
+    private final Map<Hash, Location> locations = new ConcurrentHashMap<>();
+    private final File file;
+    // 已索引的交易所在的最高区块高度
+    private volatile int height;
+
+    /**
+     * 只保存在内存中的索引
+     */
+    public TransactionIndex() {
+        this.file = null;
+    }
+
+    /**
+     * 同时写入索引文件，文件已存在时载入其中的记录并在末尾继续追加
+     * @param file 索引文件
+     */
+    public TransactionIndex(File file) {
+        this.file = file;
+        if (file.exists()) {
+            try {
+                read(Files.readAllBytes(file.toPath()));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("rebuild transaction index " + file + ": " + e.getMessage());
+                clear();
+            }
+        }
+    }
+
+    /**
+     * 加入一个区块中的全部交易
+     * @param block 区块
+     * @param height 区块的高度
+     */
+    public void add(Block block, int height) {
+        Transaction[] transactions = block.getBlockBody().getTransactions();
+        BinaryWriter writer = file == null ? null : new BinaryWriter(transactions.length * (Hash.SIZE + 4));
+        for (int i = 0; i < transactions.length; ++i) {
+            Hash txHash = transactions[i].getTxHash();
+            locations.put(txHash, new Location(height, i));
+            if (writer != null) {
+                writer.writeHash(txHash);
+                writer.writeVarInt(height);
+                writer.writeVarInt(i);
+            }
+        }
+        if (transactions.length > 0) {
+            this.height = Math.max(this.height, height);
+        }
+        if (writer != null && writer.size() > 0) {
+            try (OutputStream out = new FileOutputStream(file, true)) {
+                out.write(writer.toByteArray());
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(-1);
+            }
+        }
+    }
+
+    /**
+     * @param txHash 交易哈希
+     * @return 交易的位置，不在链上时返回null
+     */
+    public Location get(Hash txHash) {
+        return locations.get(txHash);
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    /**
+     * @return 已索引的交易所在的最高区块高度，没有索引任何交易时为0
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 清空索引及索引文件，索引与区块链不符时由BlockChain调用后重新索引
+     */
+    public void clear() {
+        locations.clear();
+        height = 0;
+        if (file != null) {
+            try {
+                Files.write(file.toPath(), new byte[0]);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(-1);
+            }
+        }
+    }
+
+    /**
+     * 由索引文件重建只保存在内存中的索引
+     * @param file 索引文件
+     * @return 索引
+     * @throws IOException 读取文件失败
+     */
+    public static TransactionIndex load(File file) throws IOException {
+        TransactionIndex index = new TransactionIndex();
+        index.read(Files.readAllBytes(file.toPath()));
+        return index;
+    }
+
+    private void read(byte[] data) {
+        BinaryReader reader = new BinaryReader(data);
+        while (reader.remaining() > 0) {
+            Hash txHash = reader.readHash();
+            int height = (int) reader.readVarInt();
+            int position = (int) reader.readVarInt();
+            locations.put(txHash, new Location(height, position));
+            this.height = Math.max(this.height, height);
+        }
+    }
+}
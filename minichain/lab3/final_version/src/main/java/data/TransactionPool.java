@@ -9,24 +9,25 @@ public class TransactionPool {
 
     private final List<Transaction> transactions;
     private final int capacity;
-    private final Set<UTXO> utxoSet;
+    // 池中交易已花费的输出位置
+    private final Set<OutPoint> spent;
 
     public TransactionPool(int capacity) {
         this.transactions = new ArrayList<>();
         this.capacity = capacity;
-        utxoSet = new HashSet<>();
+        spent = new HashSet<>();
     }
 
     public void put(Transaction transaction) {
         // 检查交易池本次交易中是否出现双花交易，临时哈希表暂存本次
-        for(UTXO utxo : transaction.getInUtxos()){
+        for(OutPoint input : transaction.getInputs()){
             // 如果包含已使用的utxo，则拒绝本次交易进入交易池
-            if(utxoSet.contains(utxo)){
+            if(spent.contains(input)){
                 return;
             }
         }
-        // 存入本次所有的输入UTXO
-        utxoSet.addAll(Arrays.asList(transaction.getInUtxos()));
+        // 存入本次所有的输入
+        spent.addAll(Arrays.asList(transaction.getInputs()));
         transactions.add(transaction);
     }
 
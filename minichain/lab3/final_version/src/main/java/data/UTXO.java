@@ -1,13 +1,21 @@
 package data;
 
+import utils.BinaryReader;
+import utils.BinaryWriter;
 import utils.SecurityUtil;
 
 import java.security.PublicKey;
 import java.util.Arrays;
 import java.util.Stack;
 
+/**
+ * 交易的一个输出：收款方的钱包地址、金额以及锁定该输出的公钥哈希
+ *
+ * equals和hashCode按字段的值比较，解码或重建的utxo与原对象相等；链上的utxo由其输出位置（OutPoint）唯一标识
+ */
 public class UTXO {
-    private final String walletAddress;
+    // 由公钥哈希重建的utxo在第一次访问时才计算钱包地址
+    private String walletAddress;
     private final int amount;
     private final byte[] publicKeyHash;
 
@@ -21,7 +29,20 @@ public class UTXO {
         this.walletAddress = walletAddress;
         this.amount = amount;
         // 对公钥进行哈希摘要，作为解锁脚本数据
-        publicKeyHash = SecurityUtil.ripemd160Digest(SecurityUtil.sha256Digest(publicKey.getEncoded()));
+        publicKeyHash = SecurityUtil.hash160(publicKey.getEncoded());
+    }
+
+    private UTXO(String walletAddress, int amount, byte[] publicKeyHash) {
+        this.walletAddress = walletAddress;
+        this.amount = amount;
+        this.publicKeyHash = publicKeyHash;
+    }
+
+    /**
+     * 由定长记录（金额和公钥哈希）重建utxo，钱包地址由公钥哈希计算（见Account.walletAddress）
+     */
+    UTXO(int amount, byte[] publicKeyHash) {
+        this(null, amount, publicKeyHash);
     }
 
     // 解锁脚本
@@ -35,7 +56,7 @@ public class UTXO {
         stack.push(stack.peek());
         // HASH160 弹出栈顶元素，进行哈希摘要，然后将其入栈
         byte[] data = stack.pop();  // 栈顶元素为PubK
-        stack.push(SecurityUtil.ripemd160Digest(SecurityUtil.sha256Digest(data)));
+        stack.push(SecurityUtil.hash160(data));
         // <PubHash> utxo先前保存的公钥哈希入栈
         stack.push(publicKeyHash);
         // EQUALVERIFY 比较栈顶的两个公钥哈希是否相同，不相同则解锁失败
@@ -52,7 +73,12 @@ public class UTXO {
     }
 
     public String getWalletAddress() {
-        return walletAddress;
+        String address = walletAddress;
+        if (address == null) {
+            address = Account.walletAddress(publicKeyHash);
+            walletAddress = address;
+        }
+        return address;
     }
 
     public int getAmount() {
@@ -63,10 +89,67 @@ public class UTXO {
         return publicKeyHash;
     }
 
+    /**
+     * 二进制编码：钱包地址（带长度的字符串） | 金额（变长整数） | 公钥哈希（带长度的字节串）
+     * @param writer 编码器
+     */
+    public void encode(BinaryWriter writer) {
+        writer.writeString(getWalletAddress());
+        writer.writeVarInt(amount);
+        writer.writeVarBytes(publicKeyHash);
+    }
+
+    public static UTXO decode(BinaryReader reader) {
+        String walletAddress = reader.readString();
+        long amount = reader.readVarInt();
+        if (amount < 0 || amount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid utxo amount " + amount);
+        }
+        return new UTXO(walletAddress, (int) amount, reader.readVarBytes());
+    }
+
+    /**
+     * 编码utxo数组：个数（变长整数）后依次为每个utxo的编码
+     * @param utxos utxo数组
+     * @param writer 编码器
+     */
+    public static void encodeAll(UTXO[] utxos, BinaryWriter writer) {
+        writer.writeVarInt(utxos.length);
+        for (UTXO utxo : utxos) {
+            utxo.encode(writer);
+        }
+    }
+
+    public static UTXO[] decodeAll(BinaryReader reader) {
+        UTXO[] utxos = new UTXO[reader.readLength()];
+        for (int i = 0; i < utxos.length; ++i) {
+            utxos[i] = decode(reader);
+        }
+        return utxos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UTXO)) {
+            return false;
+        }
+        UTXO other = (UTXO) o;
+        return amount == other.amount && getWalletAddress().equals(other.getWalletAddress())
+                && Arrays.equals(publicKeyHash, other.publicKeyHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return (getWalletAddress().hashCode() * 31 + amount) * 31 + Arrays.hashCode(publicKeyHash);
+    }
+
     @Override
     public String toString() {
         return "\n\tUTXO{" +
-                "walletAddress='" + walletAddress + '\'' +
+                "walletAddress='" + getWalletAddress() + '\'' +
                 ", amount=" + amount +
                 ", publicKeyHash=" + SecurityUtil.bytes2HexString(publicKeyHash) +
                 '}';
@@ -0,0 +1,269 @@
+package data;
+
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+import utils.SecurityUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 链状态：当前所有未使用的utxo，以输出位置（OutPoint）为键
+ *
+ * 区块上链时由BlockChain调用apply逐笔交易更新：删除交易花费的输入，加入交易新产生的输出，
+ * 查询余额和可用utxo时直接读取该集合，无需遍历区块链，开销与链的长度无关
+ *
+ * 同时维护按钱包地址的索引：每个地址未使用的输出位置及其余额，以及所有未使用utxo的总额，
+ * 三者与utxo集合在apply中一起更新，单个账户的余额和总额都可直接读出
+ *
+ * utxo本身保存在UtxoStore中，默认在堆内，也可以是堆外的内存映射文件；地址索引始终在堆内
+ *
+ * 该类不加锁，由BlockChain负责同步
+ */
+public class UtxoSet {
+
+    /**
+     * 某钱包地址的未使用输出及余额
+     */
+    private static class AddressEntry {
+        // 保持加入顺序，先产生的utxo先被选作输入
+        private final Set<OutPoint> outPoints = new LinkedHashSet<>();
+        private long balance;
+    }
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final UtxoStore utxos;
+    private final Map<String, AddressEntry> addresses = new HashMap<>();
+    private long totalAmount;
+
+    public UtxoSet() {
+        this(new MemoryUtxoStore());
+    }
+
+    /**
+     * @param store utxo的存储，必须为空
+     */
+    public UtxoSet(UtxoStore store) {
+        this.utxos = store;
+    }
+
+    /**
+     * 按顺序应用区块中的交易，同一区块中后面的交易可以花费前面交易的输出；区块应先通过validate的检查
+     * @param block 新上链的区块
+     * @throws IllegalArgumentException 交易的输入不存在或已被花费，或输出的位置上已有utxo
+     */
+    public void apply(Block block) {
+        for (Transaction transaction : block.getBlockBody().getTransactions()) {
+            for (OutPoint input : transaction.getInputs()) {
+                UTXO utxo = utxos.remove(input);
+                if (utxo == null) {
+                    throw new IllegalArgumentException("input " + input + " is missing or already spent");
+                }
+                removeFromAddress(input, utxo);
+            }
+            UTXO[] outUtxos = transaction.getOutUtxos();
+            for (int i = 0; i < outUtxos.length; ++i) {
+                add(transaction.getOutPoint(i), outUtxos[i]);
+            }
+        }
+    }
+
+    /**
+     * 检查一批交易能否按顺序应用到当前的链状态上，后面的交易可以花费前面交易的输出：
+     * 每个输入引用未使用的utxo，且在这批交易中只被花费一次；该utxo锁定在发送方公钥的哈希上；
+     * 输入总额不少于输出总额，输出金额不为负，且每个输出都能放入utxo存储（见UtxoStore.check）；
+     * 同一交易在这批交易中只出现一次，新输出的位置上没有未使用的utxo；通过检查后apply不会中途失败，不会留下只应用了一部分的区块
+     *
+     * 没有输入的交易为发行交易（如为新账户分配初始金额），凭空产生金额，只允许出现在网络直接出块的发行区块中
+     *
+     * @param transactions 一批交易
+     * @param issuance 是否允许发行交易
+     * @throws IllegalArgumentException 第一个不合法的交易及原因
+     */
+    public void validate(Transaction[] transactions, boolean issuance) {
+        Set<Hash> txHashes = new HashSet<>();
+        Map<OutPoint, UTXO> created = new HashMap<>();
+        Set<OutPoint> spent = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            if (!txHashes.add(transaction.getTxHash())) {
+                throw new IllegalArgumentException("transaction " + transaction.getTxHash() + " appears twice");
+            }
+            if (transaction.getInputs().length == 0 && !issuance) {
+                throw new IllegalArgumentException("transaction " + transaction.getTxHash()
+                        + " has no inputs, which is only allowed in an issuance block");
+            }
+            long inAmount = 0;
+            byte[] senderHash = null;
+            for (OutPoint input : transaction.getInputs()) {
+                if (!spent.add(input)) {
+                    throw new IllegalArgumentException("transaction " + transaction.getTxHash()
+                            + " spends " + input + " twice");
+                }
+                UTXO utxo = created.containsKey(input) ? created.get(input) : utxos.get(input);
+                if (utxo == null) {
+                    throw new IllegalArgumentException("transaction " + transaction.getTxHash()
+                            + " spends a missing or spent output " + input);
+                }
+                if (senderHash == null) {
+                    senderHash = SecurityUtil.hash160(transaction.getSendPublicKey().getEncoded());
+                }
+                if (!Arrays.equals(utxo.getPublicKeyHash(), senderHash)) {
+                    throw new IllegalArgumentException("transaction " + transaction.getTxHash()
+                            + " spends " + input + " which is not locked to the sender");
+                }
+                inAmount += utxo.getAmount();
+            }
+            long outAmount = 0;
+            UTXO[] outUtxos = transaction.getOutUtxos();
+            for (int i = 0; i < outUtxos.length; ++i) {
+                if (outUtxos[i].getAmount() < 0) {
+                    throw new IllegalArgumentException("transaction " + transaction.getTxHash()
+                            + " has a negative output amount");
+                }
+                try {
+                    utxos.check(outUtxos[i]);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("transaction " + transaction.getTxHash()
+                            + " has an output that cannot be stored: " + e.getMessage());
+                }
+                OutPoint outPoint = transaction.getOutPoint(i);
+                if (created.containsKey(outPoint) || utxos.get(outPoint) != null) {
+                    throw new IllegalArgumentException("transaction " + transaction.getTxHash()
+                            + " creates " + outPoint + " which already exists");
+                }
+                outAmount += outUtxos[i].getAmount();
+                created.put(outPoint, outUtxos[i]);
+            }
+            if (transaction.getInputs().length > 0 && inAmount < outAmount) {
+                throw new IllegalArgumentException("transaction " + transaction.getTxHash() + " spends "
+                        + outAmount + " but its inputs only hold " + inAmount);
+            }
+        }
+    }
+
+    /**
+     * 加入一个utxo；该位置已有utxo时直接失败，不覆盖，否则地址索引和总额会与存储不一致
+     * @throws IllegalArgumentException 该位置已有utxo
+     */
+    private void add(OutPoint outPoint, UTXO utxo) {
+        if (utxos.get(outPoint) != null) {
+            throw new IllegalArgumentException("output " + outPoint + " already exists");
+        }
+        utxos.put(outPoint, utxo);
+        addToAddress(outPoint, utxo);
+    }
+
+    private void addToAddress(OutPoint outPoint, UTXO utxo) {
+        AddressEntry entry = addresses.get(utxo.getWalletAddress());
+        if (entry == null) {
+            entry = new AddressEntry();
+            addresses.put(utxo.getWalletAddress(), entry);
+        }
+        entry.outPoints.add(outPoint);
+        entry.balance += utxo.getAmount();
+        totalAmount += utxo.getAmount();
+    }
+
+    private void removeFromAddress(OutPoint outPoint, UTXO utxo) {
+        AddressEntry entry = addresses.get(utxo.getWalletAddress());
+        entry.outPoints.remove(outPoint);
+        entry.balance -= utxo.getAmount();
+        totalAmount -= utxo.getAmount();
+        if (entry.outPoints.isEmpty()) {
+            addresses.remove(utxo.getWalletAddress());
+        }
+    }
+
+    /**
+     * @param outPoint 输出位置
+     * @return 该位置未使用的utxo，不存在或已被花费时返回null
+     */
+    public UTXO get(OutPoint outPoint) {
+        return utxos.get(outPoint);
+    }
+
+    /**
+     * @param walletAddress 钱包地址
+     * @return 属于该地址的未使用的utxo及其输出位置
+     */
+    public Map<OutPoint, UTXO> getUtxos(String walletAddress) {
+        Map<OutPoint, UTXO> result = new LinkedHashMap<>();
+        AddressEntry entry = addresses.get(walletAddress);
+        if (entry != null) {
+            for (OutPoint outPoint : entry.outPoints) {
+                result.put(outPoint, utxos.get(outPoint));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param walletAddress 钱包地址
+     * @return 该地址未使用的utxo的总额
+     */
+    public long getBalance(String walletAddress) {
+        AddressEntry entry = addresses.get(walletAddress);
+        return entry == null ? 0 : entry.balance;
+    }
+
+    /**
+     * @return 所有未使用的utxo的总额
+     */
+    public long getTotalAmount() {
+        return totalAmount;
+    }
+
+    public int size() {
+        return utxos.size();
+    }
+
+    /**
+     * 二进制编码：utxo个数（变长整数）后依次为每个utxo的输出位置和utxo的编码，按地址分组
+     *
+     * 边编码边写出，内存中只保留一小段缓冲，utxo再多也不会在堆上组装整个编码
+     * @param out 输出流
+     * @throws IOException 写入失败
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        BinaryWriter writer = new BinaryWriter(WRITE_BUFFER_SIZE);
+        writer.writeVarInt(utxos.size());
+        for (AddressEntry entry : addresses.values()) {
+            for (OutPoint outPoint : entry.outPoints) {
+                outPoint.encode(writer);
+                utxos.get(outPoint).encode(writer);
+                if (writer.size() >= WRITE_BUFFER_SIZE) {
+                    writer.writeTo(out);
+                    writer.reset();
+                }
+            }
+        }
+        writer.writeTo(out);
+    }
+
+    /**
+     * @param reader 解码器
+     * @param store 空的utxo存储
+     * @return 由编码重建的链状态，地址索引和总额随之重建
+     * @throws IllegalArgumentException 编码中有存储无法保存的utxo，或同一输出位置出现两次
+     */
+    public static UtxoSet decode(BinaryReader reader, UtxoStore store) {
+        UtxoSet utxoSet = new UtxoSet(store);
+        int count = reader.readLength();
+        for (int i = 0; i < count; ++i) {
+            OutPoint outPoint = OutPoint.decode(reader);
+            UTXO utxo = UTXO.decode(reader);
+            store.check(utxo);
+            utxoSet.add(outPoint, utxo);
+        }
+        return utxoSet;
+    }
+}
@@ -0,0 +1,204 @@
+package data;
+
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.CryptoContext;
+import utils.Hash;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 链状态（utxo集合）在某一区块高度的快照，启动时载入最新的快照，只需重放其后的区块即可恢复链状态
+ *
+ * 每个快照一个文件，文件名为utxo-高度.snapshot，内容为：
+ * 魔数（4字节） | 版本（变长整数） | 区块高度（变长整数） | 该高度的区块哈希（32字节） | UtxoSet的编码 | 前面所有字节的SHA256（32字节）
+ *
+ * 快照先写入临时文件再改名，不会留下写了一半的快照；载入时校验和不符、格式错误或区块哈希与链上不符的快照都被跳过
+ */
+public class UtxoSnapshot {
+
+    private static final int MAGIC = 0x55545853;
+    private static final int VERSION = 1;
+    private static final Pattern FILE_NAME = Pattern.compile("utxo-(\\d+)\\.snapshot");
+
+    private final int height;
+    private final Hash blockHash;
+    private final UtxoSet utxoSet;
+
+    private UtxoSnapshot(int height, Hash blockHash, UtxoSet utxoSet) {
+        this.height = height;
+        this.blockHash = blockHash;
+        this.utxoSet = utxoSet;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Hash getBlockHash() {
+        return blockHash;
+    }
+
+    public UtxoSet getUtxoSet() {
+        return utxoSet;
+    }
+
+    /**
+     * 写入快照，调用方需保证写入期间链状态不变；utxo逐条编码后经DigestOutputStream直接写入文件，同时计算校验和
+     * @param dir 快照目录
+     * @param height 链状态对应的区块高度
+     * @param blockHash 该高度的区块哈希
+     * @param utxoSet 链状态
+     * @return 快照文件
+     * @throws IOException 写入失败
+     */
+    public static File write(File dir, int height, Hash blockHash, UtxoSet utxoSet) throws IOException {
+        Files.createDirectories(dir.toPath());
+        File file = new File(dir, String.format("utxo-%010d.snapshot", height));
+        File tmp = new File(dir, file.getName() + ".tmp");
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16)) {
+            DigestOutputStream out = new DigestOutputStream(fileOut, digest);
+            BinaryWriter writer = new BinaryWriter();
+            writer.writeInt(MAGIC);
+            writer.writeVarInt(VERSION);
+            writer.writeVarInt(height);
+            writer.writeHash(blockHash);
+            writer.writeTo(out);
+            utxoSet.writeTo(out);
+            fileOut.write(digest.digest());
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * 读取并校验一个快照文件
+     * @param file 快照文件
+     * @param store 空的utxo存储，载入的utxo放入其中
+     * @return 快照
+     * @throws IOException 读取失败
+     * @throws IllegalArgumentException 校验和不符或格式错误
+     */
+    public static UtxoSnapshot read(File file, UtxoStore store) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        int length = data.length - Hash.SIZE;
+        if (length < 0 || !MessageDigest.isEqual(CryptoContext.get().sha256(data, 0, length),
+                Arrays.copyOfRange(data, length, data.length))) {
+            throw new IllegalArgumentException("snapshot checksum mismatch: " + file);
+        }
+        BinaryReader reader = new BinaryReader(Arrays.copyOf(data, length));
+        if (reader.readInt() != MAGIC || reader.readVarInt() != VERSION) {
+            throw new IllegalArgumentException("not a utxo snapshot: " + file);
+        }
+        long height = reader.readVarInt();
+        if (height < 0 || height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid snapshot height " + height);
+        }
+        Hash blockHash = reader.readHash();
+        UtxoSet utxoSet = UtxoSet.decode(reader, store);
+        if (reader.remaining() != 0) {
+            throw new IllegalArgumentException("trailing bytes in snapshot: " + file);
+        }
+        return new UtxoSnapshot((int) height, blockHash, utxoSet);
+    }
+
+    /**
+     * @param dir 快照目录
+     * @return 目录中的快照文件，按高度从高到低排列
+     */
+    public static List<File> list(File dir) {
+        List<File> files = new ArrayList<>();
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (FILE_NAME.matcher(child.getName()).matches()) {
+                    files.add(child);
+                }
+            }
+        }
+        // 文件名中的高度定长补零，按名称倒序即按高度倒序
+        Collections.sort(files, Collections.reverseOrder());
+        return files;
+    }
+
+    /**
+     * 删除较旧的快照，只保留最新的keep个
+     * @param dir 快照目录
+     * @param keep 保留的个数
+     */
+    public static void prune(File dir, int keep) {
+        List<File> files = list(dir);
+        for (int i = keep; i < files.size(); ++i) {
+            if (!files.get(i).delete()) {
+                System.out.println("failed to delete old snapshot " + files.get(i));
+            }
+        }
+    }
+
+    /**
+     * 恢复区块链的链状态：载入与链相符的最新快照，再依次应用其后的区块；没有可用的快照时从创世区块开始重放
+     * @param dir 快照目录
+     * @param blocks 区块链，下标即区块高度
+     * @param storeFactory 每次尝试载入快照或从头重放时提供一个新的空存储
+     * @return 与最新区块一致的链状态
+     */
+    public static UtxoSet restore(File dir, List<Block> blocks, StoreFactory storeFactory) {
+        UtxoSet utxoSet = null;
+        int start = 0;
+        for (File file : list(dir)) {
+            Matcher matcher = FILE_NAME.matcher(file.getName());
+            if (!matcher.matches() || Long.parseLong(matcher.group(1)) >= blocks.size()) {
+                continue;
+            }
+            try {
+                UtxoSnapshot snapshot = read(file, storeFactory.create());
+                if (snapshot.getHeight() < blocks.size()
+                        && blocks.get(snapshot.getHeight()).getHash().equals(snapshot.getBlockHash())) {
+                    utxoSet = snapshot.getUtxoSet();
+                    start = snapshot.getHeight() + 1;
+                    break;
+                }
+                System.out.println("skip snapshot of another chain: " + file);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("skip invalid snapshot " + file + ": " + e.getMessage());
+            }
+        }
+        if (utxoSet == null) {
+            utxoSet = new UtxoSet(storeFactory.create());
+        }
+        for (int height = start; height < blocks.size(); ++height) {
+            utxoSet.apply(blocks.get(height));
+        }
+        return utxoSet;
+    }
+
+    /**
+     * 创建空的utxo存储
+     */
+    public interface StoreFactory {
+        UtxoStore create();
+    }
+}
@@ -0,0 +1,40 @@
+package data;
+
+/**
+ * 链状态中utxo的存储：输出位置 -> 未使用的utxo
+ *
+ * UtxoSet在其上维护地址索引和总额；默认使用堆内的MemoryUtxoStore，
+ * utxo数量很大时可换用堆外的MappedUtxoStore（见MiniChainConfig.UTXO_STORE_FILE）
+ *
+ * 实现类不需要加锁，由BlockChain负责同步；但没有修改时必须允许多个线程同时get（写快照时与查询并发）
+ */
+public interface UtxoStore {
+
+    /**
+     * @param outPoint 输出位置
+     * @return 该位置的utxo，不存在时返回null
+     */
+    UTXO get(OutPoint outPoint);
+
+    /**
+     * 检查utxo能否放入该存储，UtxoSet.validate在修改任何状态之前对每个新输出调用
+     * @param utxo 待放入的utxo
+     * @throws IllegalArgumentException 该存储无法保存此utxo
+     */
+    void check(UTXO utxo);
+
+    /**
+     * @param outPoint 输出位置
+     * @param utxo 该位置的utxo，应已通过check
+     * @return 该位置此前是否为空
+     */
+    boolean put(OutPoint outPoint, UTXO utxo);
+
+    /**
+     * @param outPoint 输出位置
+     * @return 被删除的utxo，不存在时返回null
+     */
+    UTXO remove(OutPoint outPoint);
+
+    int size();
+}
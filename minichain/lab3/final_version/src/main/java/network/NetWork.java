@@ -1,10 +1,16 @@
 package network;
 
 import config.MiniChainConfig;
+import consensus.AuthorityRoundEngine;
+import consensus.BlockTemplateAssembler;
+import consensus.ConsensusEngine;
+import consensus.InstantSealEngine;
 import consensus.MinerPeer;
+import consensus.ProofOfWorkEngine;
 import consensus.TransactionProducer;
 import data.*;
 import spv.SpvPeer;
+import utils.Hash;
 import utils.SecurityUtil;
 
 import java.nio.charset.StandardCharsets;
@@ -13,7 +19,6 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * 该类模拟一个网络环境，在该网络中主要有区块链和矿工，另外地，出于工程实现的角度，还有一个交易池和一个生成随机交易的线程
@@ -27,7 +32,10 @@ public class NetWork {
     private final SpvPeer spvPeer;
     private final TransactionPool transactionPool;
 //    private final TransactionProducer transactionProducer;
+    private final ConsensusEngine consensusEngine;
     private final BlockChain blockChain;
+    private final List<MinerPeer> minerPeers = new ArrayList<>();
+    // 第一个矿工，负责网络中直接出块的调用（如新建账户）和spv节点的验证请求
     private final MinerPeer minerPeer;
 
     /**
@@ -58,15 +66,26 @@ public class NetWork {
         // 新建钱包节点
         spvPeer = new SpvPeer(null, this);
 
+        System.out.println("\nconsensusEngine config...");
+        consensusEngine = createConsensusEngine(MiniChainConfig.CONSENSUS_ENGINE);
+
         System.out.println("\nblockChain config...");
         blockChain = new BlockChain(this);
 
         System.out.println("\nminerPeer config...");
-        minerPeer = new MinerPeer(blockChain, this);
+        for (int i = 0; i < MiniChainConfig.MINER_NUM; ++i) {
+            MinerPeer peer = new MinerPeer(blockChain, this);
+            peer.setName("miner-peer-" + i);
+            minerPeers.add(peer);
+        }
+        minerPeer = minerPeers.get(0);
 
         System.out.println("\nnetwork start!\n");
 
-        minerPeer.broadcast(blockChain.getLatestBlock());
+        // 链上已有的区块（创世区块及从区块文件载入的区块）逐个广播，之后的区块由矿工上链时广播
+        for (int height = 0; height <= blockChain.getHeight(); ++height) {
+            minerPeer.broadcast(height, blockChain.getBlock(height));
+        }
 
         theyHaveADayDream();
     }
@@ -86,19 +105,35 @@ public class NetWork {
         byte[] sign = SecurityUtil.signature("Everything in the dream!".getBytes(StandardCharsets.UTF_8),
                 dayDreamPrivateKey);
         // 构造交易
-        Transaction transaction = new Transaction(new UTXO[]{}, outUtxo, sign,
+        Transaction transaction = new Transaction(new OutPoint[]{}, outUtxo, sign,
                 dayDreamPublicKey, System.currentTimeMillis());
         Transaction[] transactions = {transaction};
-        String preBlockHash = SecurityUtil.sha256Digest(blockChain.getLatestBlock().toString());
-        String merkleRootHash = SecurityUtil.sha256Digest(transaction.toString());
-        // 构造区块
-        BlockHeader blockHeader = new BlockHeader(preBlockHash, merkleRootHash, Math.abs(new Random().nextLong()));
+        Hash merkleRootHash = transaction.getTxHash();
+        // 构造区块体，由矿工完成区块头的构造和挖矿，并添加到链中
         BlockBody blockBody = new BlockBody(merkleRootHash, transactions);
-        Block block = new Block(blockHeader, blockBody);
-        // 添加到链中
-        blockChain.addNewBlock(block);
-        // 通过网络获取矿工节点，然后将初始区块广播出去
-        minerPeer.broadcast(block);
+        Block block = minerPeer.mine(blockBody);
+        // 区块上链时已由矿工广播出去；区块未能上链时mine返回null
+        if (block == null) {
+            System.out.println("failed to add the initial amounts to the block chain");
+        }
+    }
+
+    /**
+     * 根据配置创建共识引擎
+     * @param name 共识引擎名称
+     * @return 共识引擎
+     */
+    private ConsensusEngine createConsensusEngine(String name) {
+        switch (name) {
+            case "pow":
+                return new ProofOfWorkEngine();
+            case "instant":
+                return new InstantSealEngine();
+            case "poa":
+                return new AuthorityRoundEngine(MiniChainConfig.AUTHORITY_NUM);
+            default:
+                throw new IllegalArgumentException("unknown consensus engine: " + name);
+        }
     }
 
     public TransactionPool getTransactionPool() {
@@ -117,6 +152,14 @@ public class NetWork {
         return minerPeer;
     }
 
+    public List<MinerPeer> getMinerPeers() {
+        return minerPeers;
+    }
+
+    public ConsensusEngine getConsensusEngine() {
+        return consensusEngine;
+    }
+
     public BlockChain getBlockChain() {
         return blockChain;
     }
@@ -134,11 +177,16 @@ public class NetWork {
 //    }
 
     /**
-     * 启动挖矿线程和生成随机交易的线程
+     * 启动挖矿线程和生成随机交易的线程，流水线模式下同时启动区块模板组装线程
      */
     public void start() {
 //        transactionProducer.start();
-        minerPeer.start();
+        if (MiniChainConfig.PIPELINED_MINE) {
+            new BlockTemplateAssembler(minerPeers, transactionPool).start();
+        }
+        for (MinerPeer peer : minerPeers) {
+            peer.start();
+        }
         spvPeer.start();
     }
 
@@ -153,8 +201,13 @@ public class NetWork {
         // 遍历所有区块所有交易所有的UTXO，查看钱包地址是否相符合
         for(Transaction transaction : block.getBlockBody().getTransactions()){
             boolean have = false;
-            for(UTXO utxo : transaction.getInUtxos()){
-                if(utxo.getWalletAddress().equals(walletAddress)){
+            // 输入只记录被花费输出的位置，通过交易索引找到原来的输出
+            for(OutPoint input : transaction.getInputs()){
+                Transaction spent = blockChain.getTransaction(input.getTxHash());
+                if(spent == null || input.getIndex() < 0 || input.getIndex() >= spent.getOutUtxos().length){
+                    continue;
+                }
+                if(spent.getOutUtxos()[input.getIndex()].getWalletAddress().equals(walletAddress)){
                     list.add(transaction);
                     have = true;
                     break;
@@ -185,17 +238,15 @@ public class NetWork {
         byte[] sign = SecurityUtil.signature("Everything in the dream!".getBytes(StandardCharsets.UTF_8),
                 dayDreamPrivateKey);
 
-        Transaction transaction = new Transaction(new UTXO[]{}, outUtxos, sign, dayDreamPublicKey,
+        Transaction transaction = new Transaction(new OutPoint[]{}, outUtxos, sign, dayDreamPublicKey,
                 System.currentTimeMillis());
         Transaction[] transactions = {transaction};
-        String preBlockHash = SecurityUtil.sha256Digest(blockChain.getLatestBlock().toString());
-        String merkleRootHash = SecurityUtil.sha256Digest(transaction.toString());
-        BlockHeader blockHeader = new BlockHeader(preBlockHash, merkleRootHash, Math.abs(new Random().nextLong()));
+        Hash merkleRootHash = transaction.getTxHash();
         BlockBody blockBody = new BlockBody(merkleRootHash, transactions);
-        Block block = new Block(blockHeader, blockBody);
-
-        blockChain.addNewBlock(block);
-        minerPeer.broadcast(block);
+        Block block = minerPeer.mine(blockBody);
+        if (block == null) {
+            System.out.println("failed to add the initial amount of the new account to the block chain");
+        }
         return account;
     }
 }
@@ -0,0 +1,116 @@
+package spv;
+
+import utils.Hash;
+
+import java.util.List;
+
+/**
+ * 同一区块中多笔交易的合并验证路径
+ *
+ * 各交易的验证路径在靠近根的部分相互重叠，而且一笔交易的兄弟节点可能正是另一笔待验证的交易或由它们算出的节点，
+ * 这些节点无需发送；hashes只包含验证方无法自行算出的节点，按层自底向上、同层按下标升序排列，每个节点只出现一次
+ *
+ * 验证时从叶子层开始逐层计算已知节点的父节点，需要的兄弟节点依次从hashes中取出，一遍即可算出根
+ */
+public class MultiProof {
+
+    // 待验证交易所在区块的高度
+    private final int height;
+    // merkle树根哈希
+    private final Hash merkleRootHash;
+    // 区块中的交易个数，决定每一层的节点个数
+    private final int leafCount;
+    // 待验证交易在区块中的位置（升序）及其交易哈希
+    private final int[] positions;
+    private final Hash[] txHashes;
+    // 验证所需的其余节点
+    private final List<Hash> hashes;
+
+    public MultiProof(int height, Hash merkleRootHash, int leafCount, int[] positions, Hash[] txHashes,
+                      List<Hash> hashes) {
+        this.height = height;
+        this.merkleRootHash = merkleRootHash;
+        this.leafCount = leafCount;
+        this.positions = positions;
+        this.txHashes = txHashes;
+        this.hashes = hashes;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Hash getMerkleRootHash() {
+        return merkleRootHash;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int[] getPositions() {
+        return positions;
+    }
+
+    public Hash[] getTxHashes() {
+        return txHashes;
+    }
+
+    public List<Hash> getHashes() {
+        return hashes;
+    }
+
+    /**
+     * 由待验证交易和hashes中的节点计算Merkle根
+     * @return Merkle根，位置不合法或hashes中的节点个数与所需不符时返回null
+     */
+    public Hash computeRoot() {
+        int n = positions.length;
+        if (n == 0 || txHashes.length != n) {
+            return null;
+        }
+        int[] indexes = positions.clone();
+        Hash[] values = txHashes.clone();
+        for (int i = 0; i < n; ++i) {
+            if (indexes[i] < 0 || indexes[i] >= leafCount || (i > 0 && indexes[i] <= indexes[i - 1])) {
+                return null;
+            }
+        }
+
+        int next = 0;
+        int count = leafCount;
+        while (count > 1) {
+            int m = 0;
+            for (int i = 0; i < n; ++i) {
+                int index = indexes[i];
+                Hash hash = values[i];
+                Hash parent;
+                if ((index & 1) == 0) {
+                    Hash right;
+                    if (i + 1 < n && indexes[i + 1] == index + 1) {
+                        // 兄弟节点也是已知节点，两者一起处理
+                        right = values[++i];
+                    } else if (index + 1 >= count) {
+                        // 该层最后一个节点与自身拼接
+                        right = hash;
+                    } else if (next < hashes.size()) {
+                        right = hashes.get(next++);
+                    } else {
+                        return null;
+                    }
+                    parent = Hash.sha256(hash, right);
+                } else if (next < hashes.size()) {
+                    parent = Hash.sha256(hashes.get(next++), hash);
+                } else {
+                    return null;
+                }
+                indexes[m] = index >>> 1;
+                values[m] = parent;
+                ++m;
+            }
+            n = m;
+            count = (count + 1) / 2;
+        }
+        return next == hashes.size() ? values[0] : null;
+    }
+}
@@ -1,5 +1,7 @@
 package spv;
 
+import utils.Hash;
+
 import java.util.List;
 
 public class Proof {
@@ -15,15 +17,15 @@ public class Proof {
      * 验证路径上的节点
      */
     public static class Node{
-        private final String txHash;
+        private final Hash txHash;
         private final Orientation orientation;
 
-        public Node(String txHash, Orientation orientation){
+        public Node(Hash txHash, Orientation orientation){
             this.txHash = txHash;
             this.orientation = orientation;
         }
 
-        public String getTxHash() {
+        public Hash getTxHash() {
             return txHash;
         }
 
@@ -33,26 +35,26 @@ public class Proof {
     }
 
     // 待验证交易的交易哈希
-    private final String txHash;
+    private final Hash txHash;
     // merkle树根哈希
-    private final String merkleRootHash;
+    private final Hash merkleRootHash;
     // 待验证交易所在区块的高度
     private final int height;
     // 验证路径，内部是哈希值及其偏向
     private final List<Node> path;
 
-    public Proof(String txHash, String merkleRootHash, int height, List<Node> path){
+    public Proof(Hash txHash, Hash merkleRootHash, int height, List<Node> path){
         this.txHash = txHash;
         this.merkleRootHash = merkleRootHash;
         this.height = height;
         this.path = path;
     }
 
-    public String getTxHash() {
+    public Hash getTxHash() {
         return txHash;
     }
 
-    public String getMerkleRootHash() {
+    public Hash getMerkleRootHash() {
         return merkleRootHash;
     }
 
@@ -4,19 +4,27 @@ package spv;
 import consensus.MinerPeer;
 import data.*;
 import network.NetWork;
+import utils.Hash;
 import utils.SecurityUtil;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
 
 /**
  * 轻节点类，之储存区块头信息，不存储具体交易数据，可向全节点发送验证请求获取某交易的验证路径，以此验证该交易的真实性
  */
 
 public class SpvPeer extends Thread{
-    private final List<BlockHeader> headers = new ArrayList<>();
+    // 区块高度 -> 区块头；多个矿工线程同时广播，区块头到达的顺序不一定是高度的顺序
+    private final Map<Integer, BlockHeader> headers = new HashMap<>();
     private Account account;
     private final NetWork network;
 
@@ -27,14 +35,23 @@ public class SpvPeer extends Thread{
 
     /**
      * 添加一个区块头
+     * @param height 区块高度，创世区块的高度为0
      * @param blockHeader
      */
-    public void accept(BlockHeader blockHeader){
-        headers.add(blockHeader);
+    public synchronized void accept(int height, BlockHeader blockHeader){
+        headers.put(height, blockHeader);
         // 接受后验证一下
 //        verifyLatest();
     }
 
+    /**
+     * @param height 区块高度
+     * @return 该高度的区块头，尚未收到时返回null
+     */
+    private synchronized BlockHeader getHeader(int height){
+        return headers.get(height);
+    }
+
     /**
      * 如果有相关的交易，验证最新块的交易
      */
@@ -59,7 +76,7 @@ public class SpvPeer extends Thread{
      * @param txHash
      * @return
      */
-    public boolean simplifiedPaymentVerify(String txHash){
+    public boolean simplifiedPaymentVerify(Hash txHash){
         // 获取交易哈希
 //        String txHash = SecurityUtil.sha256Digest(transaction.toString());
 
@@ -72,21 +89,24 @@ public class SpvPeer extends Thread{
         }
 
         // 使用获得的验证路径计算merkle根哈希
-        String hash = proof.getTxHash();
+        Hash hash = proof.getTxHash();
         for(Proof.Node node : proof.getPath()){
             switch (node.getOrientation()){
-                case LEFT: hash = SecurityUtil.sha256Digest(node.getTxHash() + hash); break;
-                case RIGHT: hash = SecurityUtil.sha256Digest(hash + node.getTxHash()); break;
+                case LEFT: hash = Hash.sha256(node.getTxHash(), hash); break;
+                case RIGHT: hash = Hash.sha256(hash, node.getTxHash()); break;
                 default: return false;
             }
         }
 
         // 获得本地区块头部中的根哈希
-        int height = proof.getHeight();
-        String localMerkleRootHash = headers.get(height).getMerkleRootHash();
+        BlockHeader header = getHeader(proof.getHeight());
+        if(header == null){
+            return false;
+        }
+        Hash localMerkleRootHash = header.getMerkleRootHash();
 
         // 获取远程节点发送过来的哈希
-        String remoteMerkleRootHash = proof.getMerkleRootHash();
+        Hash remoteMerkleRootHash = proof.getMerkleRootHash();
 
         System.out.println("\n----------------> verify hash:\t" + txHash);
         System.out.println("calMerkleRootHash:\t\t" + hash);
@@ -97,6 +117,41 @@ public class SpvPeer extends Thread{
         return hash.equals(localMerkleRootHash) && hash.equals(remoteMerkleRootHash);
     }
 
+    /**
+     * 批量spv验证，一次请求取得各区块的合并验证路径，每个区块只需一遍计算即可验证其中的全部交易
+     * @param txHashes 待验证的交易哈希
+     * @return 验证通过的交易哈希
+     */
+    public Set<Hash> simplifiedPaymentVerify(Collection<Hash> txHashes){
+        MinerPeer minerPeer = network.getMinerPeer();
+        List<MultiProof> proofs = minerPeer.getMultiProofs(txHashes);
+
+        Set<Hash> verified = new HashSet<>();
+        for(MultiProof proof : proofs){
+            int height = proof.getHeight();
+            BlockHeader header = getHeader(height);
+            if(header == null){
+                continue;
+            }
+            // 使用获得的合并验证路径计算merkle根哈希
+            Hash hash = proof.computeRoot();
+            Hash localMerkleRootHash = header.getMerkleRootHash();
+            Hash remoteMerkleRootHash = proof.getMerkleRootHash();
+
+            System.out.println("\n----------------> verify " + proof.getTxHashes().length
+                    + " transactions in block " + height + " with " + proof.getHashes().size() + " hashes");
+            System.out.println("calMerkleRootHash:\t\t" + hash);
+            System.out.println("localMerkleRootHash:\t" + localMerkleRootHash);
+            System.out.println("remoteMerkleRootHash:\t" + remoteMerkleRootHash);
+
+            if(hash != null && hash.equals(localMerkleRootHash) && hash.equals(remoteMerkleRootHash)){
+                Collections.addAll(verified, proof.getTxHashes());
+            }
+        }
+        System.out.println();
+        return verified;
+    }
+
     @Override
     public void run() {
         while (true) {
@@ -128,6 +183,7 @@ public class SpvPeer extends Thread{
                     System.out.println("create your own transaction (enter: create a transaction).");
                     System.out.println("query your balance (enter: query balance).");
                     System.out.println("query a transaction (enter: query a transaction).");
+                    System.out.println("query several transactions (enter: query transactions).");
                     System.out.println("create random transactions (enter: random transactions).");
 
                     String str = scan.nextLine();
@@ -146,7 +202,7 @@ public class SpvPeer extends Thread{
                             continue;
                         }
                         System.out.println("create a transaction, the txHash is " +
-                                SecurityUtil.sha256Digest(transaction.toString()));
+                                transaction.getTxHash());
                         transactionPool.put(transaction);
                         if(transactionPool.isFull()){
                             transactionPool.notify();
@@ -158,7 +214,13 @@ public class SpvPeer extends Thread{
                     }
                     else if(str.equals("query transaction")){
                         System.out.println("please enter a txHash of transaction.");
-                        String txHash = scan.nextLine();
+                        Hash txHash;
+                        try {
+                            txHash = Hash.fromHex(scan.nextLine().trim());
+                        } catch (IllegalArgumentException e) {
+                            System.out.println(e.getMessage());
+                            continue;
+                        }
                         if(simplifiedPaymentVerify(txHash)){
                             System.out.println("transaction exist");
                         }
@@ -166,11 +228,27 @@ public class SpvPeer extends Thread{
                             System.out.println("transaction doesn't exist.");
                         }
                     }
+                    else if(str.equals("query transactions")){
+                        System.out.println("please enter txHashes of transactions, separated by spaces.");
+                        List<Hash> txHashes = new ArrayList<>();
+                        try {
+                            for(String hex : scan.nextLine().trim().split("\\s+")){
+                                txHashes.add(Hash.fromHex(hex));
+                            }
+                        } catch (IllegalArgumentException e) {
+                            System.out.println(e.getMessage());
+                            continue;
+                        }
+                        Set<Hash> verified = simplifiedPaymentVerify(txHashes);
+                        for(Hash txHash : txHashes){
+                            System.out.println(txHash + (verified.contains(txHash) ? ": exist" : ": doesn't exist"));
+                        }
+                    }
                     else if(str.equals("random transaction")){
                         while(!transactionPool.isFull()){
                             Transaction transaction = getRandomTransaction();
                             System.out.println("create random transaction, the txHash is "+
-                                    SecurityUtil.sha256Digest(transaction.toString()));
+                                    transaction.getTxHash());
                             transactionPool.put(transaction);
                             if(transactionPool.isFull()){
                                 transactionPool.notify();
@@ -203,7 +281,7 @@ public class SpvPeer extends Thread{
         }
         String aWalletAddress = aAccount.getWalletAddress();
         String bWalletAddress = bAccount.getWalletAddress();
-        UTXO[] aTrueUtxos = network.getBlockChain().getTrueUtxos(aWalletAddress);
+        Map<OutPoint, UTXO> aUnspent = network.getBlockChain().getUnspent(aWalletAddress);
         int aAmount = getbalance();
         int txAmount = amount;
         if(aAmount < amount){
@@ -211,14 +289,15 @@ public class SpvPeer extends Thread{
             return transaction;
         }
 
-        List<UTXO> inUtxoList = new ArrayList<>();
+        List<OutPoint> inputList = new ArrayList<>();
         List<UTXO> outUtxoList = new ArrayList<>();
         byte[] aUnlockSign = SecurityUtil.signature(aAccount.getPublicKey().getEncoded(), aAccount.getPrivateKey());
         int inAmount = 0;
-        for(UTXO utxo : aTrueUtxos){
+        for(Map.Entry<OutPoint, UTXO> entry : aUnspent.entrySet()){
+            UTXO utxo = entry.getValue();
             if(utxo.unlockScript(aUnlockSign, aAccount.getPublicKey())){
                 inAmount += utxo.getAmount();
-                inUtxoList.add(utxo);
+                inputList.add(entry.getKey());
                 if(inAmount >= txAmount){
                     break;
                 }
@@ -234,20 +313,17 @@ public class SpvPeer extends Thread{
             outUtxoList.add(new UTXO(aWalletAddress, inAmount - txAmount, aAccount.getPublicKey()));
         }
 
-        UTXO[] inUtxos = inUtxoList.toArray(new UTXO[0]);
+        OutPoint[] inputs = inputList.toArray(new OutPoint[0]);
         UTXO[] outUtxos = outUtxoList.toArray(new UTXO[0]);
-        byte[] data = SecurityUtil.utxos2Bytes(inUtxos, outUtxos);
-        byte[] sign = SecurityUtil.signature(data, aAccount.getPrivateKey());
+        Hash sigHash = SecurityUtil.sigHash(inputs, outUtxos);
+        byte[] sign = SecurityUtil.signature(sigHash, aAccount.getPrivateKey());
         long timestamp = System.currentTimeMillis();
-        transaction = new Transaction(inUtxos, outUtxos, sign, aAccount.getPublicKey(), timestamp);
+        transaction = new Transaction(inputs, outUtxos, sign, aAccount.getPublicKey(), timestamp);
         return transaction;
     }
 
     private int getbalance(){
-        String walletAddress = account.getWalletAddress();
-        UTXO[] aTrueUtxos = network.getBlockChain().getTrueUtxos(walletAddress);
-        int amount = account.getAmount(aTrueUtxos);
-        return amount;
+        return network.getBlockChain().getBalance(account.getWalletAddress());
     }
 
     private Transaction getRandomTransaction() {
@@ -268,29 +344,31 @@ public class SpvPeer extends Thread{
             String aWalletAddress = aAccount.getWalletAddress();
             String bWalletAddress = bAccount.getWalletAddress();
 
-            // 获取A可用的utxo并计算余额
-            UTXO[] aTrueUtxos = network.getBlockChain().getTrueUtxos(aWalletAddress);
-            int aAmount = aAccount.getAmount(aTrueUtxos);
+            // 直接读取A的余额
+            int aAmount = network.getBlockChain().getBalance(aWalletAddress);
             // 若A账户的余额为0，则无法构建交易，重新随机生成
             if(aAmount == 0){
                 continue;
             }
+            // 获取A可用的utxo
+            Map<OutPoint, UTXO> aUnspent = network.getBlockChain().getUnspent(aWalletAddress);
 
             // 随机生成交易数额[1, aAmount]之间
             int txAmount = random.nextInt(aAmount) + 1;
             // 构建InUtxo和OutUtxo
-            List<UTXO> inUtxoList = new ArrayList<>();
+            List<OutPoint> inputList = new ArrayList<>();
             List<UTXO> outUtxoList = new ArrayList<>();
 
             byte[] aUnlockSign = SecurityUtil.signature(aAccount.getPublicKey().getEncoded(), aAccount.getPrivateKey());
 
             // 选择输入总额 >= 交易数额的utxo
             int inAmount = 0;
-            for(UTXO utxo : aTrueUtxos){
+            for(Map.Entry<OutPoint, UTXO> entry : aUnspent.entrySet()){
+                UTXO utxo = entry.getValue();
                 // 解锁成功才能使用该utxo
                 if(utxo.unlockScript(aUnlockSign, aAccount.getPublicKey())){
                     inAmount += utxo.getAmount();
-                    inUtxoList.add(utxo);
+                    inputList.add(entry.getKey());
                     if(inAmount >= txAmount){
                         break;
                     }
@@ -309,18 +387,18 @@ public class SpvPeer extends Thread{
             }
 
             // 导出固定utxo数组
-            UTXO[] inUtxos = inUtxoList.toArray(new UTXO[0]);
+            OutPoint[] inputs = inputList.toArray(new OutPoint[0]);
             UTXO[] outUtxos = outUtxoList.toArray(new UTXO[0]);
 
             // A账户需要对整个交易进行私钥签名，确保交易不会被篡改
-            // 获取要签名的数据
-            byte[] data = SecurityUtil.utxos2Bytes(inUtxos, outUtxos);
+            // 获取要签名的数据的摘要
+            Hash sigHash = SecurityUtil.sigHash(inputs, outUtxos);
             // A账户使用私钥签名
-            byte[] sign = SecurityUtil.signature(data, aAccount.getPrivateKey());
+            byte[] sign = SecurityUtil.signature(sigHash, aAccount.getPrivateKey());
             // 交易时间戳
             long timestamp = System.currentTimeMillis();
             // 构造交易
-            transaction = new Transaction(inUtxos, outUtxos, sign, aAccount.getPublicKey(), timestamp);
+            transaction = new Transaction(inputs, outUtxos, sign, aAccount.getPublicKey(), timestamp);
             // 成功构造一笔交易，退出循环
             break;
         }
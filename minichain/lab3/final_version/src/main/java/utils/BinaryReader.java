@@ -0,0 +1,111 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 二进制解码器，按BinaryWriter的编码规则依次读出各字段，数据不完整或格式错误时抛出IllegalArgumentException
+ */
+public class BinaryReader {
+
+    private final byte[] data;
+    private int position;
+
+    public BinaryReader(byte[] data) {
+        this.data = data;
+    }
+
+    public int readByte() {
+        require(1);
+        return data[position++] & 0xff;
+    }
+
+    public int readInt() {
+        require(4);
+        int value = 0;
+        for (int i = 0; i < 4; ++i) {
+            value = (value << 8) | (data[position++] & 0xff);
+        }
+        return value;
+    }
+
+    public long readLong() {
+        require(8);
+        long value = 0;
+        for (int i = 0; i < 8; ++i) {
+            value = (value << 8) | (data[position++] & 0xff);
+        }
+        return value;
+    }
+
+    public long readVarInt() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint too long at position " + position);
+    }
+
+    /**
+     * 读取长度、个数等不超过int范围的变长整数
+     * @return 非负整数
+     */
+    public int readLength() {
+        long value = readVarInt();
+        if (value < 0 || value > remaining()) {
+            throw new IllegalArgumentException("invalid length " + value + " at position " + position);
+        }
+        return (int) value;
+    }
+
+    public byte[] readBytes(int length) {
+        require(length);
+        byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+        position += length;
+        return bytes;
+    }
+
+    /**
+     * 读取带长度前缀的字节串
+     * @return 字节数据，长度为0时返回null，与BinaryWriter对null的处理对应
+     */
+    public byte[] readVarBytes() {
+        int length = readLength();
+        return length == 0 ? null : readBytes(length);
+    }
+
+    /**
+     * 读取32字节的哈希值
+     * @return 哈希值，全0时返回null，与BinaryWriter对null的处理对应
+     */
+    public Hash readHash() {
+        require(Hash.SIZE);
+        int start = position;
+        position += Hash.SIZE;
+        for (int i = start; i < position; ++i) {
+            if (data[i] != 0) {
+                return Hash.of(data, start);
+            }
+        }
+        return null;
+    }
+
+    public String readString() {
+        byte[] bytes = readVarBytes();
+        return bytes == null ? "" : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int remaining() {
+        return data.length - position;
+    }
+
+    private void require(int length) {
+        if (length < 0 || length > remaining()) {
+            throw new IllegalArgumentException("unexpected end of data at position " + position);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 二进制编码器，data包中各个类的规范二进制格式都通过它写出，哈希、签名和存储使用同一份编码
+ *
+ * 编码规则：
+ *    定长整数按大端序写出；
+ *    长度、个数和金额等非负整数写为变长整数（每字节低7位为数据，最高位表示后面是否还有字节）；
+ *    哈希值写为32字节的原始数据，空哈希写为全0；
+ *    公钥、签名等变长字节串先写变长整数表示的长度，再写原始数据；字符串按UTF-8编码后同样处理
+ */
+public class BinaryWriter {
+
+    private byte[] buffer;
+    private int size;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    /**
+     * @param capacity 初始容量，写满后自动扩容
+     */
+    public BinaryWriter(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    public BinaryWriter writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+        return this;
+    }
+
+    public BinaryWriter writeInt(int value) {
+        ensureCapacity(4);
+        for (int i = 3; i >= 0; --i) {
+            buffer[size + i] = (byte) value;
+            value >>>= 8;
+        }
+        size += 4;
+        return this;
+    }
+
+    public BinaryWriter writeLong(long value) {
+        ensureCapacity(8);
+        for (int i = 7; i >= 0; --i) {
+            buffer[size + i] = (byte) value;
+            value >>>= 8;
+        }
+        size += 8;
+        return this;
+    }
+
+    /**
+     * 写入变长整数，按无符号数处理，0~127只占1个字节
+     * @param value 整数
+     * @return this
+     */
+    public BinaryWriter writeVarInt(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7fL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * 写入原始字节，不带长度
+     * @param data 字节数据
+     * @return this
+     */
+    public BinaryWriter writeBytes(byte[] data) {
+        ensureCapacity(data.length);
+        System.arraycopy(data, 0, buffer, size, data.length);
+        size += data.length;
+        return this;
+    }
+
+    /**
+     * 写入带长度前缀的字节串，null按长度为0写出
+     * @param data 字节数据
+     * @return this
+     */
+    public BinaryWriter writeVarBytes(byte[] data) {
+        if (data == null) {
+            return writeVarInt(0);
+        }
+        writeVarInt(data.length);
+        return writeBytes(data);
+    }
+
+    /**
+     * 写入32字节的哈希值
+     * @param hash 哈希值，为null时写入全0
+     * @return this
+     */
+    public BinaryWriter writeHash(Hash hash) {
+        ensureCapacity(Hash.SIZE);
+        if (hash == null) {
+            Arrays.fill(buffer, size, size + Hash.SIZE, (byte) 0);
+        } else {
+            hash.writeTo(buffer, size);
+        }
+        size += Hash.SIZE;
+        return this;
+    }
+
+    public BinaryWriter writeString(String value) {
+        return writeVarBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 清空已写入的数据，保留已分配的缓冲区以便重复使用
+     * @return this
+     */
+    public BinaryWriter reset() {
+        size = 0;
+        return this;
+    }
+
+    /**
+     * 同包内直接读取缓冲区，有效数据为前size()个字节，调用方不得修改
+     */
+    byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * 把已写入的数据写到输出流，无需先复制出字节数组
+     * @param out 输出流
+     * @throws IOException 写入失败
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    /**
+     * @return 已写入的全部数据
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
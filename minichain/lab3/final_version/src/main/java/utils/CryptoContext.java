@@ -0,0 +1,251 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+
+/**
+ * 每个线程独享的一组密码学引擎：SHA256摘要、RIPEMD160摘要和ECDSA签名，以及计算签名摘要时使用的编码缓冲区
+ *
+ * MessageDigest.getInstance和Signature.getInstance每次都要查找安全提供者并创建新对象，
+ * 验证一个区块中的交易时会被调用成千上万次；这些对象不是线程安全的，因此每个线程各保存一份，通过get取得后重复使用
+ *
+ * 每次使用前都会重置引擎：摘要在上次计算异常中断时可能残留数据，签名引擎每次都重新initSign或initVerify，
+ * 因此调用者无需关心引擎之前被用来做过什么；同一线程内不要在一次计算的中途再次调用本类的方法
+ *
+ * 除字节数组外也接受ByteBuffer，已经编码在缓冲区中的数据无需先复制到数组或转换为字符串
+ */
+public final class CryptoContext {
+
+    private static final ThreadLocal<CryptoContext> CONTEXT = new ThreadLocal<CryptoContext>() {
+        @Override
+        protected CryptoContext initialValue() {
+            return new CryptoContext();
+        }
+    };
+
+    private final MessageDigest sha256;
+    private final Signature ecdsa;
+    // 对已算好的32字节摘要直接签名和验签，与SHA256withECDSA对原数据的签名互相兼容
+    private final Signature ecdsaDigest;
+    private final Ripemd160 ripemd160 = new Ripemd160();
+    private final BinaryWriter writer = new BinaryWriter(1024);
+
+    private CryptoContext() {
+        MessageDigest digest = null;
+        Signature signature = null;
+        Signature digestSignature = null;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+            signature = Signature.getInstance("SHA256withECDSA");
+            digestSignature = Signature.getInstance("NONEwithECDSA");
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        this.sha256 = digest;
+        this.ecdsa = signature;
+        this.ecdsaDigest = digestSignature;
+    }
+
+    /**
+     * @return 当前线程的密码学引擎
+     */
+    public static CryptoContext get() {
+        return CONTEXT.get();
+    }
+
+    public byte[] sha256(byte[] data) {
+        return sha256(data, 0, data.length);
+    }
+
+    public byte[] sha256(byte[] data, int offset, int length) {
+        sha256.reset();
+        sha256.update(data, offset, length);
+        return sha256.digest();
+    }
+
+    /**
+     * 计算data中offset起length个字节的SHA256，直接写入out的outOffset处
+     * @param data 数据
+     * @param offset 数据起始位置
+     * @param length 数据长度
+     * @param out 输出数组，需有32字节的空间
+     * @param outOffset 写入的起始位置
+     */
+    public void sha256(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        sha256.reset();
+        sha256.update(data, offset, length);
+        try {
+            sha256.digest(out, outOffset, Hash.SIZE);
+        } catch (DigestException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * 计算data中两个32字节节点拼接后的SHA256，直接写入out的outOffset处；两个位置可以相同，即节点与自身拼接
+     * @param data 节点所在的数组
+     * @param leftOffset 左节点的起始位置
+     * @param rightOffset 右节点的起始位置
+     * @param out 输出数组，需有32字节的空间
+     * @param outOffset 写入的起始位置
+     */
+    public void sha256Pair(byte[] data, int leftOffset, int rightOffset, byte[] out, int outOffset) {
+        sha256.reset();
+        sha256.update(data, leftOffset, Hash.SIZE);
+        sha256.update(data, rightOffset, Hash.SIZE);
+        try {
+            sha256.digest(out, outOffset, Hash.SIZE);
+        } catch (DigestException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * 计算两段数据拼接后的SHA256，无需先拼接成一个数组，如Merkle树中两个子节点的哈希
+     * @param first 前一段数据
+     * @param second 后一段数据
+     * @return SHA256哈希值
+     */
+    public byte[] sha256(byte[] first, byte[] second) {
+        sha256.reset();
+        sha256.update(first);
+        sha256.update(second);
+        return sha256.digest();
+    }
+
+    /**
+     * 计算编码器中已写入数据的SHA256，无需先复制出字节数组
+     * @param writer 编码器
+     * @return SHA256哈希值
+     */
+    public byte[] sha256(BinaryWriter writer) {
+        return sha256(writer.array(), 0, writer.size());
+    }
+
+    /**
+     * @return 当前线程复用的编码器，已清空；在下一次调用本方法前有效
+     */
+    public BinaryWriter writer() {
+        return writer.reset();
+    }
+
+    /**
+     * @param data 缓冲区中position至limit之间的数据，计算后position移动到limit
+     * @return SHA256哈希值
+     */
+    public byte[] sha256(ByteBuffer data) {
+        sha256.reset();
+        sha256.update(data);
+        return sha256.digest();
+    }
+
+    /**
+     * @param data 数据
+     * @return 20字节的RIPEMD160哈希值
+     */
+    public byte[] ripemd160(byte[] data) {
+        return ripemd160.digest(data);
+    }
+
+    /**
+     * 公钥哈希，即RIPEMD160(SHA256(data))
+     * @param data 数据，通常为公钥编码
+     * @return 20字节的哈希值
+     */
+    public byte[] hash160(byte[] data) {
+        return ripemd160.digest(sha256(data));
+    }
+
+    public byte[] sign(byte[] data, PrivateKey privateKey) {
+        return sign(ByteBuffer.wrap(data), privateKey);
+    }
+
+    /**
+     * 私钥签名
+     * @param data 缓冲区中position至limit之间的数据
+     * @param privateKey 签名私钥
+     * @return 签名后的比特数据
+     */
+    public byte[] sign(ByteBuffer data, PrivateKey privateKey) {
+        byte[] sign = null;
+        try {
+            ecdsa.initSign(privateKey);
+            ecdsa.update(data);
+            sign = ecdsa.sign();
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        return sign;
+    }
+
+    public boolean verify(byte[] data, byte[] sign, PublicKey publicKey) {
+        return verify(ByteBuffer.wrap(data), sign, publicKey);
+    }
+
+    /**
+     * 公钥验证签名
+     * @param data 缓冲区中position至limit之间的数据
+     * @param sign 签名
+     * @param publicKey 公钥
+     * @return 签名是否有效
+     */
+    public boolean verify(ByteBuffer data, byte[] sign, PublicKey publicKey) {
+        boolean result = false;
+        try {
+            ecdsa.initVerify(publicKey);
+            ecdsa.update(data);
+            result = ecdsa.verify(sign);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        return result;
+    }
+
+    /**
+     * 对已算好的SHA256摘要签名，结果与SHA256withECDSA对原数据的签名相同
+     * @param digest 32字节摘要
+     * @param privateKey 签名私钥
+     * @return 签名后的比特数据
+     */
+    public byte[] signDigest(Hash digest, PrivateKey privateKey) {
+        byte[] sign = null;
+        try {
+            ecdsaDigest.initSign(privateKey);
+            ecdsaDigest.update(digest.array());
+            sign = ecdsaDigest.sign();
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        return sign;
+    }
+
+    /**
+     * 验证对SHA256摘要的签名，也可验证SHA256withECDSA对原数据的签名
+     * @param digest 32字节摘要
+     * @param sign 签名
+     * @param publicKey 公钥
+     * @return 签名是否有效
+     */
+    public boolean verifyDigest(Hash digest, byte[] sign, PublicKey publicKey) {
+        boolean result = false;
+        try {
+            ecdsaDigest.initVerify(publicKey);
+            ecdsaDigest.update(digest.array());
+            result = ecdsaDigest.verify(sign);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+        return result;
+    }
+}
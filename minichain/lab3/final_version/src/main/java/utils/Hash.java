@@ -0,0 +1,143 @@
+package utils;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * 32字节哈希值的不可变类型，用于区块哈希、Merkle树节点和交易哈希
+ *
+ * 只保存32字节的原始数据，占用的内存约为64个字符的十六进制字符串的四分之一；
+ * 哈希码在创建时算好，equals使用与数据无关的常数时间比较，十六进制形式只在需要显示时生成并缓存
+ */
+public final class Hash {
+
+    public static final int SIZE = 32;
+
+    private final byte[] bytes;
+    private final int hashCode;
+    private String hex;
+
+    private Hash(byte[] bytes) {
+        this.bytes = bytes;
+        // 哈希值本身已经均匀分布，取前4个字节即可
+        this.hashCode = (bytes[0] << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+    }
+
+    /**
+     * @param bytes 32字节的哈希值，会被复制
+     * @return 哈希值
+     */
+    public static Hash of(byte[] bytes) {
+        return of(bytes, 0);
+    }
+
+    /**
+     * @param data 数据
+     * @param offset 哈希值在数据中的起始位置，从该位置复制32个字节
+     * @return 哈希值
+     */
+    public static Hash of(byte[] data, int offset) {
+        if (offset < 0 || data.length - offset < SIZE) {
+            throw new IllegalArgumentException("hash needs " + SIZE + " bytes");
+        }
+        return new Hash(Arrays.copyOfRange(data, offset, offset + SIZE));
+    }
+
+    /**
+     * 同包内由新计算出的摘要直接构造，不再复制
+     */
+    static Hash wrap(byte[] bytes) {
+        return new Hash(bytes);
+    }
+
+    /**
+     * @param hex 64个字符的十六进制字符串
+     * @return 哈希值
+     */
+    public static Hash fromHex(String hex) {
+        if (hex.length() != SIZE * 2) {
+            throw new IllegalArgumentException("hash needs " + SIZE * 2 + " hex digits: " + hex);
+        }
+        byte[] bytes = new byte[SIZE];
+        for (int i = 0; i < SIZE; ++i) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("invalid hex digit in hash: " + hex);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return new Hash(bytes);
+    }
+
+    /**
+     * @param data 数据
+     * @return 数据的SHA256哈希值
+     */
+    public static Hash sha256(byte[] data) {
+        return new Hash(SecurityUtil.sha256Digest(data));
+    }
+
+    /**
+     * Merkle树父节点的哈希值，即两个子节点原始字节拼接后的SHA256
+     * @param left 左子节点
+     * @param right 右子节点
+     * @return 父节点的哈希值
+     */
+    public static Hash sha256(Hash left, Hash right) {
+        return new Hash(CryptoContext.get().sha256(left.bytes, right.bytes));
+    }
+
+    /**
+     * 同包内直接读取哈希值的字节，调用方不得修改
+     */
+    byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * 将哈希值写入给定数组，无需复制出新的数组
+     * @param out 输出数组
+     * @param offset 写入的起始位置
+     */
+    public void writeTo(byte[] out, int offset) {
+        System.arraycopy(bytes, 0, out, offset, SIZE);
+    }
+
+    /**
+     * @return 哈希值原始字节的副本
+     */
+    public byte[] toBytes() {
+        return bytes.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Hash)) {
+            return false;
+        }
+        Hash other = (Hash) o;
+        return hashCode == other.hashCode && MessageDigest.isEqual(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * @return 十六进制形式，第一次调用时生成
+     */
+    @Override
+    public String toString() {
+        String value = hex;
+        if (value == null) {
+            value = SecurityUtil.bytes2HexString(bytes);
+            hex = value;
+        }
+        return value;
+    }
+}
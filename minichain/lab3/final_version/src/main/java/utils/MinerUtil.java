@@ -1,21 +1,88 @@
 package utils;
 
 import config.MiniChainConfig;
+import data.Block;
+import data.BlockHeader;
+
+import java.math.BigInteger;
 
 public class MinerUtil {
 
     /**
-     * 静态方法，使用MinerUtil.hashPrefixTarget()即可调用
-     * 该方法根据根据挖矿的难度值设置，返回一个相应数量的0组成的字符串，供挖矿线程判断其区块是否满足难度条件
+     * 初始的紧凑格式目标值，由系统配置中的难度值（前导十六进制0的个数）换算得到
+     */
+    public static final int INIT_BITS = Target.fromDifficulty(MiniChainConfig.DIFFICULTY).getBits();
+
+    /**
+     * 根据上一个调整周期内实际的出块时间计算新的目标值
+     *
+     * 新目标值 = 旧目标值 * 实际用时 / 期望用时，实际用时被限制在期望用时的1/4到4倍之间，避免单次调整幅度过大；
+     * 新目标值也不会超过初始目标值，即难度不会低于系统配置的初始难度
+     *
+     * @param bits 当前的紧凑格式目标值
+     * @param actualTimespan 最近RETARGET_INTERVAL个区块的实际用时（毫秒）
+     * @return 新的紧凑格式目标值
+     */
+    public static int retarget(int bits, long actualTimespan) {
+        long expectedTimespan = MiniChainConfig.TARGET_BLOCK_INTERVAL * MiniChainConfig.RETARGET_INTERVAL;
+        long timespan = Math.max(expectedTimespan / 4, Math.min(expectedTimespan * 4, actualTimespan));
+        BigInteger next = Target.fromBits(bits).toBigInteger()
+                .multiply(BigInteger.valueOf(timespan))
+                .divide(BigInteger.valueOf(expectedTimespan));
+        BigInteger limit = Target.fromBits(INIT_BITS).toBigInteger();
+        return Target.fromBigInteger(next.min(limit)).getBits();
+    }
+
+    /**
+     * 计算区块的哈希值
+     *
+     * BINARY_HEADER_HASH为true时只对二进制区块头进行哈希（见BlockHeader.hashBytes，有签名时包括签名），
+     * 区块头中的Merkle根已经承诺了区块内的所有交易（上链时BlockChain.addNewBlock校验Merkle根与交易相符）；
+     * 否则对整个区块的二进制编码进行哈希
      *
-     * @return 根据挖矿难度值，相应数量的0组成的字符串
+     * @param block 区块
+     * @return 32字节的区块哈希
      */
-    public static String hashPrefixTarget() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < MiniChainConfig.DIFFICULTY; i++) {
-            stringBuilder.append("0");
+    public static byte[] blockHashBytes(Block block) {
+        if (MiniChainConfig.BINARY_HEADER_HASH) {
+            return SecurityUtil.sha256Digest(block.getBlockHeader().hashBytes());
         }
-        return stringBuilder.toString();
+        return SecurityUtil.sha256Digest(block.toBytes());
+    }
+
+    /**
+     * 计算区块的哈希值
+     *
+     * @param block 区块
+     * @return 区块哈希
+     */
+    public static Hash blockHash(Block block) {
+        return Hash.of(blockHashBytes(block));
+    }
+
+    /**
+     * nonce区间搜索完仍未找到满足条件的区块时，换一个时间戳得到新的区块头，区块头编码随之改变，可以重新搜索同一个nonce区间
+     *
+     * 区块头中没有额外的nonce字段，也没有可以改写的coinbase交易，因此只滚动时间戳，Merkle根保持不变；
+     * 新时间戳取当前时间与原时间戳加1中的较大者，保证每次滚动得到的区块头都不相同
+     *
+     * @param block 当前的区块
+     * @return 时间戳滚动后的新区块，nonce与原区块相同
+     */
+    public static Block rollTimestamp(Block block) {
+        BlockHeader blockHeader = block.getBlockHeader();
+        long timestamp = Math.max(System.currentTimeMillis(), blockHeader.getTimestamp() + 1);
+        return new Block(new BlockHeader(blockHeader, timestamp), block.getBlockBody());
+    }
+
+    /**
+     * 验证区块的工作量证明，BINARY_HEADER_HASH模式下只需区块头即可完成验证
+     *
+     * @param block 区块
+     * @return 区块哈希是否不大于区块头中的目标值
+     */
+    public static boolean checkProofOfWork(Block block) {
+        return Target.fromBits(block.getBlockHeader().getBits()).isMetBy(blockHashBytes(block));
     }
 
 }
@@ -0,0 +1,150 @@
+package utils;
+
+import data.BlockHeader;
+
+/**
+ * 多路挖矿哈希器，一次计算lanes个连续nonce的区块头哈希
+ *
+ * 与MiningHasher一样复用区块头前缀的midstate和第二个数据块的前4轮，区别在于所有消息字和工作变量都按"路"交错存放：
+ * 每一步运算都是对lanes个互不相关的值做同样的操作，最内层是对连续数组元素的简单循环，
+ * 便于JIT编译器将其自动向量化为SIMD指令（如AVX2下一条指令处理8路）；无法向量化时即为普通的标量循环，结果完全相同
+ *
+ * 循环移位写成两次移位的异或而不是Integer.rotateRight：两次移位的结果没有重叠的比特，异或与或等价，
+ * 而HotSpot会把rotateRight及移位的或识别为循环移位指令，在JDK 17上这样的循环无法被向量化
+ *
+ * 检查目标值时先只比较每一路哈希的第一个状态字，绝大多数路在此即被排除，只有少数路需要完整比较
+ */
+public class MultiLaneHasher {
+
+    private static final int NONCE_WORD = (BlockHeader.NONCE_OFFSET - Sha256.BLOCK_SIZE) / 4;
+
+    private final int lanes;
+    private final int[] midstate;
+    private final int[] presetVars = new int[8];
+    // 第t个消息字的第l路保存在w[t][l]，每个消息字单独一个数组，最内层循环的下标与路的下标一致才能被向量化
+    private final int[][] w;
+    // 8个工作变量，每轮只改写其中两个数组，再轮换数组引用，避免逐路搬移
+    private final int[][] vars = new int[8][];
+    private final int[] state = new int[8];
+
+    /**
+     * @param template 区块头模板
+     * @param lanes 一次计算的nonce个数
+     */
+    public MultiLaneHasher(BlockHeader template, int lanes) {
+        this.lanes = lanes;
+        byte[] padded = new byte[Sha256.BLOCK_SIZE * 2];
+        template.writeTo(padded);
+        padded[BlockHeader.HEADER_SIZE] = (byte) 0x80;
+        padded[padded.length - 2] = (byte) ((BlockHeader.HEADER_SIZE * 8) >>> 8);
+        padded[padded.length - 1] = (byte) (BlockHeader.HEADER_SIZE * 8);
+
+        midstate = Sha256.midstate(padded, 1);
+        int[] block = new int[64];
+        Sha256.decodeBlock(padded, Sha256.BLOCK_SIZE, block);
+        System.arraycopy(midstate, 0, presetVars, 0, 8);
+        Sha256.rounds(presetVars, block, 0, NONCE_WORD);
+
+        // 除nonce所在的两个消息字外，前16个消息字对所有路都相同
+        w = new int[64][lanes];
+        for (int t = 0; t < 16; ++t) {
+            for (int l = 0; l < lanes; ++l) {
+                w[t][l] = block[t];
+            }
+        }
+        for (int i = 0; i < 8; ++i) {
+            vars[i] = new int[lanes];
+        }
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * 计算nonce为firstNonce至firstNonce + lanes - 1时的区块头哈希，各路的最终状态可通过hash取得
+     * @param firstNonce 第0路的nonce
+     */
+    public void compute(long firstNonce) {
+        int n = lanes;
+        int[] high = w[NONCE_WORD], low = w[NONCE_WORD + 1];
+        for (int l = 0; l < n; ++l) {
+            long nonce = firstNonce + l;
+            high[l] = (int) (nonce >>> 32);
+            low[l] = (int) nonce;
+        }
+
+        for (int t = 16; t < 64; ++t) {
+            int[] wt = w[t], wt2 = w[t - 2], wt7 = w[t - 7], wt15 = w[t - 15], wt16 = w[t - 16];
+            for (int l = 0; l < n; ++l) {
+                int w15 = wt15[l];
+                int w2 = wt2[l];
+                int s0 = (w15 >>> 7) ^ (w15 << 25) ^ (w15 >>> 18) ^ (w15 << 14) ^ (w15 >>> 3);
+                int s1 = (w2 >>> 17) ^ (w2 << 15) ^ (w2 >>> 19) ^ (w2 << 13) ^ (w2 >>> 10);
+                wt[l] = wt16[l] + s0 + wt7[l] + s1;
+            }
+        }
+
+        int[] a = vars[0], b = vars[1], c = vars[2], d = vars[3];
+        int[] e = vars[4], f = vars[5], g = vars[6], h = vars[7];
+        for (int i = 0; i < 8; ++i) {
+            int preset = presetVars[i];
+            int[] var = vars[i];
+            for (int l = 0; l < n; ++l) {
+                var[l] = preset;
+            }
+        }
+        for (int t = NONCE_WORD; t < 64; ++t) {
+            int k = Sha256.K[t];
+            int[] wt = w[t];
+            for (int l = 0; l < n; ++l) {
+                int el = e[l];
+                int al = a[l];
+                int s1 = (el >>> 6) ^ (el << 26) ^ (el >>> 11) ^ (el << 21) ^ (el >>> 25) ^ (el << 7);
+                int ch = (el & f[l]) ^ (~el & g[l]);
+                int t1 = h[l] + s1 + ch + k + wt[l];
+                int s0 = (al >>> 2) ^ (al << 30) ^ (al >>> 13) ^ (al << 19) ^ (al >>> 22) ^ (al << 10);
+                int maj = (al & b[l]) ^ (al & c[l]) ^ (b[l] & c[l]);
+                // 新的e写入d的数组，新的a写入h的数组，随后轮换引用
+                d[l] += t1;
+                h[l] = t1 + s0 + maj;
+            }
+            int[] oldH = h;
+            h = g; g = f; f = e; e = d;
+            d = c; c = b; b = a; a = oldH;
+        }
+        vars[0] = a; vars[1] = b; vars[2] = c; vars[3] = d;
+        vars[4] = e; vars[5] = f; vars[6] = g; vars[7] = h;
+    }
+
+    /**
+     * 取得最近一次compute中某一路的哈希值
+     * @param lane 路的下标
+     * @return 大端序的哈希状态字，该数组会在下次调用时被覆盖
+     */
+    public int[] hash(int lane) {
+        for (int i = 0; i < 8; ++i) {
+            state[i] = midstate[i] + vars[i][lane];
+        }
+        return state;
+    }
+
+    /**
+     * 判断nonce为firstNonce至firstNonce + lanes - 1时是否有满足目标值的区块头
+     * @param firstNonce 第0路的nonce
+     * @param target 目标值
+     * @return 第一个满足目标值的路的下标，均不满足时返回-1
+     */
+    public int check(long firstNonce, Target target) {
+        compute(firstNonce);
+        int[] a = vars[0];
+        int limit = target.getWord(0);
+        int mid = midstate[0];
+        for (int l = 0; l < lanes; ++l) {
+            if (((mid + a[l]) ^ Integer.MIN_VALUE) <= (limit ^ Integer.MIN_VALUE) && target.isMetBy(hash(l))) {
+                return l;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,152 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * 纯Java的RIPEMD160实现，java标准库没有提供该摘要算法
+ *
+ * 与比特币一样，公钥哈希为RIPEMD160(SHA256(公钥))，长度为20字节；
+ * 对象内部只有一个消息字数组和状态数组，可重复使用，计算过程中除输出数组外不产生新的对象；对象不是线程安全的，
+ * 多线程下通过CryptoContext取得各线程独享的实例
+ */
+public class Ripemd160 {
+
+    public static final int BLOCK_SIZE = 64;
+    public static final int DIGEST_SIZE = 20;
+
+    // 左右两条线每一步选用的消息字下标
+    private static final int[] R_LEFT = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+            7, 4, 13, 1, 10, 6, 15, 3, 12, 0, 9, 5, 2, 14, 11, 8,
+            3, 10, 14, 4, 9, 15, 8, 1, 2, 7, 0, 6, 13, 11, 5, 12,
+            1, 9, 11, 10, 0, 8, 12, 4, 13, 3, 7, 15, 14, 5, 6, 2,
+            4, 0, 5, 9, 7, 12, 2, 10, 14, 1, 3, 8, 11, 6, 15, 13
+    };
+    private static final int[] R_RIGHT = {
+            5, 14, 7, 0, 9, 2, 11, 4, 13, 6, 15, 8, 1, 10, 3, 12,
+            6, 11, 3, 7, 0, 13, 5, 10, 14, 15, 8, 12, 4, 9, 1, 2,
+            15, 5, 1, 3, 7, 14, 6, 9, 11, 8, 12, 2, 10, 0, 4, 13,
+            8, 6, 4, 1, 3, 11, 15, 0, 5, 12, 2, 13, 9, 7, 10, 14,
+            12, 15, 10, 4, 1, 5, 8, 7, 6, 2, 13, 14, 0, 3, 9, 11
+    };
+    // 左右两条线每一步的循环左移位数
+    private static final int[] S_LEFT = {
+            11, 14, 15, 12, 5, 8, 7, 9, 11, 13, 14, 15, 6, 7, 9, 8,
+            7, 6, 8, 13, 11, 9, 7, 15, 7, 12, 15, 9, 11, 7, 13, 12,
+            11, 13, 6, 7, 14, 9, 13, 15, 14, 8, 13, 6, 5, 12, 7, 5,
+            11, 12, 14, 15, 14, 15, 9, 8, 9, 14, 5, 6, 8, 6, 5, 12,
+            9, 15, 5, 11, 6, 8, 13, 12, 5, 12, 13, 14, 11, 8, 5, 6
+    };
+    private static final int[] S_RIGHT = {
+            8, 9, 9, 11, 13, 15, 15, 5, 7, 7, 8, 11, 14, 14, 12, 6,
+            9, 13, 15, 7, 12, 8, 9, 11, 7, 7, 12, 7, 6, 15, 13, 11,
+            9, 7, 15, 11, 8, 6, 6, 14, 12, 13, 5, 14, 13, 13, 7, 5,
+            15, 5, 8, 11, 14, 14, 6, 14, 6, 9, 12, 9, 12, 5, 15, 8,
+            8, 5, 12, 9, 12, 5, 14, 6, 8, 13, 6, 5, 15, 13, 11, 11
+    };
+    private static final int[] K_LEFT = {0x00000000, 0x5a827999, 0x6ed9eba1, 0x8f1bbcdc, 0xa953fd4e};
+    private static final int[] K_RIGHT = {0x50a28be6, 0x5c4dd124, 0x6d703ef3, 0x7a6d76e9, 0x00000000};
+
+    private final int[] x = new int[16];
+    private final int[] state = new int[5];
+
+    /**
+     * @param data 数据
+     * @return 20字节的RIPEMD160哈希值
+     */
+    public byte[] digest(byte[] data) {
+        byte[] out = new byte[DIGEST_SIZE];
+        digest(data, 0, data.length, out, 0);
+        return out;
+    }
+
+    /**
+     * 计算data中offset起length个字节的哈希值，写入out的outOffset处
+     * @param data 数据
+     * @param offset 数据起始位置
+     * @param length 数据长度
+     * @param out 输出数组
+     * @param outOffset 写入的起始位置
+     */
+    public void digest(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        state[0] = 0x67452301;
+        state[1] = 0xefcdab89;
+        state[2] = 0x98badcfe;
+        state[3] = 0x10325476;
+        state[4] = 0xc3d2e1f0;
+
+        int end = offset + length;
+        int p = offset;
+        for (; end - p >= BLOCK_SIZE; p += BLOCK_SIZE) {
+            for (int i = 0; i < 16; ++i) {
+                x[i] = readInt(data, p + i * 4);
+            }
+            compress();
+        }
+
+        // 最后不足一块的数据加上填充：0x80，若干个0，以及小端序的比特长度；放不下长度时多压缩一块
+        Arrays.fill(x, 0);
+        int rest = end - p;
+        for (int i = 0; i < rest; ++i) {
+            x[i >>> 2] |= (data[p + i] & 0xff) << ((i & 3) * 8);
+        }
+        x[rest >>> 2] |= 0x80 << ((rest & 3) * 8);
+        if (rest >= BLOCK_SIZE - 8) {
+            compress();
+            Arrays.fill(x, 0);
+        }
+        long bits = (long) length << 3;
+        x[14] = (int) bits;
+        x[15] = (int) (bits >>> 32);
+        compress();
+
+        for (int i = 0; i < 5; ++i) {
+            int v = state[i];
+            out[outOffset + i * 4] = (byte) v;
+            out[outOffset + i * 4 + 1] = (byte) (v >>> 8);
+            out[outOffset + i * 4 + 2] = (byte) (v >>> 16);
+            out[outOffset + i * 4 + 3] = (byte) (v >>> 24);
+        }
+    }
+
+    private void compress() {
+        int al = state[0], bl = state[1], cl = state[2], dl = state[3], el = state[4];
+        int ar = al, br = bl, cr = cl, dr = dl, er = el;
+        for (int j = 0; j < 80; ++j) {
+            int round = j >>> 4;
+            int t = Integer.rotateLeft(al + f(round, bl, cl, dl) + x[R_LEFT[j]] + K_LEFT[round], S_LEFT[j]) + el;
+            al = el;
+            el = dl;
+            dl = Integer.rotateLeft(cl, 10);
+            cl = bl;
+            bl = t;
+
+            t = Integer.rotateLeft(ar + f(4 - round, br, cr, dr) + x[R_RIGHT[j]] + K_RIGHT[round], S_RIGHT[j]) + er;
+            ar = er;
+            er = dr;
+            dr = Integer.rotateLeft(cr, 10);
+            cr = br;
+            br = t;
+        }
+        int t = state[1] + cl + dr;
+        state[1] = state[2] + dl + er;
+        state[2] = state[3] + el + ar;
+        state[3] = state[4] + al + br;
+        state[4] = state[0] + bl + cr;
+        state[0] = t;
+    }
+
+    private static int f(int round, int x, int y, int z) {
+        switch (round) {
+            case 0: return x ^ y ^ z;
+            case 1: return (x & y) | (~x & z);
+            case 2: return (x | ~y) ^ z;
+            case 3: return (x & z) | (y & ~z);
+            default: return x ^ (y | ~z);
+        }
+    }
+
+    private static int readInt(byte[] data, int p) {
+        return (data[p] & 0xff) | ((data[p + 1] & 0xff) << 8) | ((data[p + 2] & 0xff) << 16) | (data[p + 3] << 24);
+    }
+}
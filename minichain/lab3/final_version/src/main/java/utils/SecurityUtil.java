@@ -1,10 +1,12 @@
 package utils;
 
+import data.OutPoint;
 import data.UTXO;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.spec.ECGenParameterSpec;
-import java.util.Arrays;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
 
 public class SecurityUtil {
 
@@ -35,41 +37,34 @@ public class SecurityUtil {
      * @return SHA256哈希值
      */
     public static String sha256Digest(String data) {
-        MessageDigest sha256Digest = null;
-        try {
-            sha256Digest = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            System.exit(-1);
-        }
-        sha256Digest.update(data.getBytes(StandardCharsets.UTF_8));
-        return bytes2HexString(sha256Digest.digest());
+        return bytes2HexString(sha256Digest(data.getBytes(StandardCharsets.UTF_8)));
     }
 
     /**
-     * 字节版本哈希函数
+     * 字节版本哈希函数，使用当前线程复用的摘要引擎（见CryptoContext）
      * @param data
      * @return
      */
     public static byte[] sha256Digest(byte[] data) {
-        MessageDigest sha256Digest = null;
-        try {
-            sha256Digest = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            System.exit(-1);
-        }
-        sha256Digest.update(data);
-        return sha256Digest.digest();
+        return CryptoContext.get().sha256(data);
     }
 
     /**
-     * 由于java标准库没有提供RIPEMD160哈希摘要算法，故暂不做任何操作
+     * java标准库没有提供RIPEMD160哈希摘要算法，使用纯Java实现（见Ripemd160）
      * @param data
-     * @return
+     * @return 20字节的RIPEMD160哈希值
      */
     public static byte[] ripemd160Digest(byte[] data) {
-        return data;
+        return CryptoContext.get().ripemd160(data);
+    }
+
+    /**
+     * 公钥哈希，即RIPEMD160(SHA256(data))，UTXO的锁定脚本、解锁脚本和钱包地址都使用该值
+     * @param data 数据，通常为公钥编码
+     * @return 20字节的公钥哈希
+     */
+    public static byte[] hash160(byte[] data) {
+        return CryptoContext.get().hash160(data);
     }
 
     /**
@@ -77,12 +72,25 @@ public class SecurityUtil {
      * @return
      */
     public static KeyPair secp256k1Generate() {
+        return ecGenerate("secp256k1");
+    }
+
+    /**
+     * secp256r1（P-256）密钥生成，各版本的JDK都支持该曲线（JDK 16起不再内置secp256k1），
+     * 只在进程内使用、无需与比特币兼容的密钥（如权威证明的签名节点）使用该曲线
+     * @return
+     */
+    public static KeyPair secp256r1Generate() {
+        return ecGenerate("secp256r1");
+    }
+
+    private static KeyPair ecGenerate(String curve) {
         KeyPair keyPair = null;
         try {
             // ECC(Elliptic Curve Cryptography) 椭圆曲线密钥生成器
             KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
-            // 指定secp256k1曲线
-            ECGenParameterSpec ecGenParameterSpec = new ECGenParameterSpec("secp256k1");
+            // 指定曲线
+            ECGenParameterSpec ecGenParameterSpec = new ECGenParameterSpec(curve);
             // 随机数保证每次生成不同的密钥
             keyPairGenerator.initialize(ecGenParameterSpec, new SecureRandom());
             // 生成公私密钥对
@@ -96,48 +104,89 @@ public class SecurityUtil {
     }
 
     /**
-     * 私钥签名
-     * @param data 签名数据
-     * @param privateKey 签名私钥
-     * @return 签名后的比特数据
+     * 由X.509编码（即PublicKey.getEncoded()的结果）还原椭圆曲线公钥
+     * @param encoded 公钥编码
+     * @return 公钥
      */
-    public static byte[] signature(byte[] data, PrivateKey privateKey) {
-        byte[] sign = null;
+    public static PublicKey decodePublicKey(byte[] encoded) {
         try {
-            Signature signature = Signature.getInstance("SHA256withECDSA");
-            signature.initSign(privateKey);
-            signature.update(data);
-            sign = signature.sign();
+            return KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(encoded));
         } catch (Exception e) {
-            e.printStackTrace();
-            System.exit(-1);
+            throw new IllegalArgumentException("invalid public key encoding", e);
         }
-        return sign;
     }
 
-
-    public static boolean verify(byte[] data, byte[] sign, PublicKey publicKey) {
-        boolean result = false;
+    /**
+     * 由PKCS#8编码（即PrivateKey.getEncoded()的结果）还原椭圆曲线私钥
+     * @param encoded 私钥编码
+     * @return 私钥
+     */
+    public static PrivateKey decodePrivateKey(byte[] encoded) {
         try {
-            Signature signature = Signature.getInstance("SHA256withECDSA");
-            signature.initVerify(publicKey);
-            signature.update(data);
-            result = signature.verify(sign);
+            return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(encoded));
         } catch (Exception e) {
-            e.printStackTrace();
-            System.exit(-1);
+            throw new IllegalArgumentException("invalid private key encoding", e);
         }
-        return result;
     }
 
     /**
-     * utxo数组（包含输入和输出）转化为byte数据供交易签名
-     * @param inUtxos
+     * 私钥签名，使用当前线程复用的签名引擎（见CryptoContext）
+     * @param data 签名数据
+     * @param privateKey 签名私钥
+     * @return 签名后的比特数据
+     */
+    public static byte[] signature(byte[] data, PrivateKey privateKey) {
+        return CryptoContext.get().sign(data, privateKey);
+    }
+
+
+    public static boolean verify(byte[] data, byte[] sign, PublicKey publicKey) {
+        return CryptoContext.get().verify(data, sign, publicKey);
+    }
+
+    /**
+     * 对交易的签名摘要签名
+     * @param sigHash 签名摘要，见sigHash
+     * @param privateKey 签名私钥
+     * @return 签名后的比特数据，与signature(utxos2Bytes(...), privateKey)的结果可以互相验证
+     */
+    public static byte[] signature(Hash sigHash, PrivateKey privateKey) {
+        return CryptoContext.get().signDigest(sigHash, privateKey);
+    }
+
+    public static boolean verify(Hash sigHash, byte[] sign, PublicKey publicKey) {
+        return CryptoContext.get().verifyDigest(sigHash, sign, publicKey);
+    }
+
+    /**
+     * 交易的输入（被花费输出的位置）和输出转化为byte数据供交易签名，使用与交易编码中相同的二进制格式
+     * @param inputs
      * @param outUtxos
      * @return
      */
-    public static byte[] utxos2Bytes(UTXO[] inUtxos, UTXO[] outUtxos) {
-        return (Arrays.toString(inUtxos) + Arrays.toString(outUtxos)).getBytes(StandardCharsets.UTF_8);
+    public static byte[] utxos2Bytes(OutPoint[] inputs, UTXO[] outUtxos) {
+        BinaryWriter writer = new BinaryWriter();
+        OutPoint.encodeAll(inputs, writer);
+        UTXO.encodeAll(outUtxos, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 交易的签名摘要，即utxos2Bytes结果的SHA256
+     *
+     * 各输入和UTXO的字段直接编码进当前线程复用的缓冲区后计算摘要，不产生中间的字节数组；
+     * 签名和验签都只对这32字节的摘要进行，一笔交易的摘要只需计算一次（见Transaction.getSigHash）
+     *
+     * @param inputs
+     * @param outUtxos
+     * @return 签名摘要
+     */
+    public static Hash sigHash(OutPoint[] inputs, UTXO[] outUtxos) {
+        CryptoContext context = CryptoContext.get();
+        BinaryWriter writer = context.writer();
+        OutPoint.encodeAll(inputs, writer);
+        UTXO.encodeAll(outUtxos, writer);
+        return Hash.wrap(context.sha256(writer));
     }
 
 }
@@ -0,0 +1,161 @@
+package utils;
+
+/**
+ * 基于int运算的SHA256实现，供挖矿使用
+ *
+ * 与MessageDigest不同，该类把压缩函数拆成了几个可单独调用的步骤，调用方可以保存某一前缀数据压缩后的中间状态（midstate），
+ * 之后每次只需完成剩余部分的压缩，所有步骤都只读写调用方传入的数组，不产生新的对象
+ */
+public class Sha256 {
+
+    public static final int BLOCK_SIZE = 64;
+    public static final int DIGEST_SIZE = 32;
+
+    private static final int[] INIT_STATE = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    // 轮常量，同包的多路哈希器也需要使用
+    static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    /**
+     * 获得SHA256的初始状态
+     * @return 新的长度为8的状态数组
+     */
+    public static int[] initState() {
+        return INIT_STATE.clone();
+    }
+
+    /**
+     * 按大端序将一个64字节的数据块读入消息字的前16项
+     * @param data 数据
+     * @param offset 数据块的起始位置
+     * @param w 长度为64的消息字数组
+     */
+    public static void decodeBlock(byte[] data, int offset, int[] w) {
+        for (int i = 0; i < 16; ++i) {
+            int p = offset + i * 4;
+            w[i] = (data[p] << 24) | ((data[p + 1] & 0xff) << 16) | ((data[p + 2] & 0xff) << 8) | (data[p + 3] & 0xff);
+        }
+    }
+
+    /**
+     * 由消息字的前16项扩展出第16至63项
+     * @param w 长度为64的消息字数组
+     */
+    public static void expand(int[] w) {
+        for (int i = 16; i < 64; ++i) {
+            int w15 = w[i - 15];
+            int w2 = w[i - 2];
+            int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+            int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+    }
+
+    /**
+     * 执行压缩函数的第from至to-1轮，工作变量a~h保存在vars中，可分多次调用
+     * @param vars 长度为8的工作变量数组，会被原地修改
+     * @param w 已扩展的消息字数组
+     * @param from 起始轮次（包含）
+     * @param to 结束轮次（不包含）
+     */
+    public static void rounds(int[] vars, int[] w, int from, int to) {
+        int a = vars[0], b = vars[1], c = vars[2], d = vars[3];
+        int e = vars[4], f = vars[5], g = vars[6], h = vars[7];
+        for (int i = from; i < to; ++i) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = h + s1 + ch + K[i] + w[i];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        vars[0] = a; vars[1] = b; vars[2] = c; vars[3] = d;
+        vars[4] = e; vars[5] = f; vars[6] = g; vars[7] = h;
+    }
+
+    /**
+     * 对一个数据块执行完整的压缩函数，结果累加到state中
+     * @param state 长度为8的哈希状态
+     * @param w 长度为64的消息字数组，前16项为数据块内容
+     * @param vars 长度为8的工作变量数组，作为临时空间
+     */
+    public static void compress(int[] state, int[] w, int[] vars) {
+        expand(w);
+        System.arraycopy(state, 0, vars, 0, 8);
+        rounds(vars, w, 0, 64);
+        for (int i = 0; i < 8; ++i) {
+            state[i] += vars[i];
+        }
+    }
+
+    /**
+     * 对数据开头的若干完整数据块进行压缩，得到中间状态
+     * @param data 数据
+     * @param blocks 压缩的数据块个数
+     * @return 压缩这些数据块后的哈希状态
+     */
+    public static int[] midstate(byte[] data, int blocks) {
+        int[] state = initState();
+        int[] w = new int[64];
+        int[] vars = new int[8];
+        for (int i = 0; i < blocks; ++i) {
+            decodeBlock(data, i * BLOCK_SIZE, w);
+            compress(state, w, vars);
+        }
+        return state;
+    }
+
+    /**
+     * 将哈希状态按大端序写为32字节的摘要
+     * @param state 哈希状态
+     * @param out 输出数组
+     */
+    public static void toBytes(int[] state, byte[] out) {
+        for (int i = 0; i < 8; ++i) {
+            out[i * 4] = (byte) (state[i] >>> 24);
+            out[i * 4 + 1] = (byte) (state[i] >>> 16);
+            out[i * 4 + 2] = (byte) (state[i] >>> 8);
+            out[i * 4 + 3] = (byte) state[i];
+        }
+    }
+
+    /**
+     * 计算任意数据的SHA256摘要，结果与MessageDigest一致
+     * @param data 数据
+     * @return 32字节摘要
+     */
+    public static byte[] digest(byte[] data) {
+        // 补位：0x80，若干个0，最后8字节为数据的比特长度
+        int paddedLength = ((data.length + 8) / BLOCK_SIZE + 1) * BLOCK_SIZE;
+        byte[] padded = new byte[paddedLength];
+        System.arraycopy(data, 0, padded, 0, data.length);
+        padded[data.length] = (byte) 0x80;
+        long bitLength = (long) data.length * 8;
+        for (int i = 0; i < 8; ++i) {
+            padded[paddedLength - 1 - i] = (byte) (bitLength >>> (8 * i));
+        }
+        int[] state = midstate(padded, paddedLength / BLOCK_SIZE);
+        byte[] out = new byte[DIGEST_SIZE];
+        toBytes(state, out);
+        return out;
+    }
+}
@@ -0,0 +1,140 @@
+package utils;
+
+import java.math.BigInteger;
+
+/**
+ * 256位的挖矿目标值，区块哈希（按大端序视为无符号整数）不大于目标值即满足难度条件
+ *
+ * 区块头中以比特币的紧凑格式（bits）保存目标值：最高字节为目标值的字节长度，低3字节为其最高的3个有效字节，
+ * 因此目标值可以按任意比例调整，而不像前导0个数那样只能以16倍为单位变化
+ */
+public class Target {
+
+    private static final BigInteger MAX_VALUE = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+
+    private final int bits;
+    private final byte[] bytes = new byte[32];
+    private final int[] words = new int[8];
+
+    private Target(int bits) {
+        this.bits = bits;
+        byte[] magnitude = decode(bits).toByteArray();
+        // toByteArray可能带有一个符号字节，只取低32字节
+        int length = Math.min(magnitude.length, 32);
+        System.arraycopy(magnitude, magnitude.length - length, bytes, 32 - length, length);
+        for (int i = 0; i < 8; ++i) {
+            words[i] = (bytes[i * 4] << 24) | ((bytes[i * 4 + 1] & 0xff) << 16)
+                    | ((bytes[i * 4 + 2] & 0xff) << 8) | (bytes[i * 4 + 3] & 0xff);
+        }
+    }
+
+    /**
+     * 由紧凑格式构造目标值
+     * @param bits 紧凑格式的目标值
+     * @return 目标值
+     */
+    public static Target fromBits(int bits) {
+        return new Target(bits);
+    }
+
+    /**
+     * 由整数构造目标值，超出紧凑格式精度的低位会被舍去，超过256位的部分会被截断为最大值
+     * @param value 目标值
+     * @return 目标值
+     */
+    public static Target fromBigInteger(BigInteger value) {
+        return new Target(encode(value.min(MAX_VALUE)));
+    }
+
+    /**
+     * 由前导十六进制0的个数构造近似的目标值，即2^(256 - 4 * difficulty) - 1
+     * @param difficulty 前导十六进制0的个数
+     * @return 目标值
+     */
+    public static Target fromDifficulty(int difficulty) {
+        return fromBigInteger(BigInteger.ONE.shiftLeft(256 - 4 * difficulty).subtract(BigInteger.ONE));
+    }
+
+    private static BigInteger decode(int bits) {
+        int size = bits >>> 24;
+        int mantissa = bits & 0x007fffff;
+        if ((bits & 0x00800000) != 0 || size > 32) {
+            throw new IllegalArgumentException("invalid target bits: " + Integer.toHexString(bits));
+        }
+        if (size <= 3) {
+            return BigInteger.valueOf(mantissa >>> (8 * (3 - size)));
+        }
+        return BigInteger.valueOf(mantissa).shiftLeft(8 * (size - 3));
+    }
+
+    private static int encode(BigInteger value) {
+        int size = (value.bitLength() + 7) / 8;
+        int mantissa;
+        if (size <= 3) {
+            mantissa = value.intValue() << (8 * (3 - size));
+        } else {
+            mantissa = value.shiftRight(8 * (size - 3)).intValue();
+        }
+        // 尾数的最高位是符号位，需要让出
+        if ((mantissa & 0x00800000) != 0) {
+            mantissa >>>= 8;
+            ++size;
+        }
+        return (size << 24) | mantissa;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * @param index 状态字下标，0为最高位
+     * @return 目标值按大端序划分的第index个32位字
+     */
+    public int getWord(int index) {
+        return words[index];
+    }
+
+    public BigInteger toBigInteger() {
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * 比较32字节的哈希值与目标值，无需转换为十六进制字符串
+     * @param hash 大端序的哈希值
+     * @return 哈希值是否不大于目标值
+     */
+    public boolean isMetBy(byte[] hash) {
+        for (int i = 0; i < 32; ++i) {
+            int a = hash[i] & 0xff;
+            int b = bytes[i] & 0xff;
+            if (a != b) {
+                return a < b;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 比较以8个int表示的哈希值（即SHA256的最终状态）与目标值
+     * @param hash 大端序的哈希状态字
+     * @return 哈希值是否不大于目标值
+     */
+    public boolean isMetBy(int[] hash) {
+        for (int i = 0; i < 8; ++i) {
+            if (hash[i] != words[i]) {
+                // 最高位取反后按有符号数比较，即无符号比较
+                return (hash[i] ^ Integer.MIN_VALUE) < (words[i] ^ Integer.MIN_VALUE);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "Target{" +
+                "bits=0x" + Integer.toHexString(bits) +
+                ", value=" + SecurityUtil.bytes2HexString(bytes) +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import utils.CryptoContext;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+
+/**
+ * 对比每次调用都getInstance（原SecurityUtil的做法）与复用CryptoContext中线程独享引擎的速率
+ *
+ * 交易哈希、Merkle节点等输入都很短，此时创建引擎的开销占比最大
+ */
+public class CryptoContextBenchmark {
+
+    private static final int DIGEST_ROUNDS = 2_000_000;
+    private static final int SIGN_ROUNDS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        byte[] data = new byte[64];
+        for (int round = 0; round < 3; ++round) {
+            System.out.printf("sha256 getInstance: %.0f ns/op, context: %.0f ns/op%n",
+                    digestPerCall(data), digestContext(data));
+            System.out.printf("sign+verify getInstance: %.1f us/op, context: %.1f us/op%n",
+                    signPerCall(data, keyPair.getPrivate(), keyPair.getPublic()),
+                    signContext(data, keyPair.getPrivate(), keyPair.getPublic()));
+        }
+    }
+
+    private static double digestPerCall(byte[] data) throws Exception {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < DIGEST_ROUNDS; ++i) {
+            data[0] = (byte) i;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data);
+            sink += digest.digest()[0];
+        }
+        return perOp(start, DIGEST_ROUNDS, sink);
+    }
+
+    private static double digestContext(byte[] data) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < DIGEST_ROUNDS; ++i) {
+            data[0] = (byte) i;
+            sink += CryptoContext.get().sha256(data)[0];
+        }
+        return perOp(start, DIGEST_ROUNDS, sink);
+    }
+
+    private static double signPerCall(byte[] data, PrivateKey privateKey, PublicKey publicKey) throws Exception {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < SIGN_ROUNDS; ++i) {
+            Signature signature = Signature.getInstance("SHA256withECDSA");
+            signature.initSign(privateKey);
+            signature.update(data);
+            byte[] sign = signature.sign();
+            signature = Signature.getInstance("SHA256withECDSA");
+            signature.initVerify(publicKey);
+            signature.update(data);
+            sink += signature.verify(sign) ? 1 : 0;
+        }
+        return perOp(start, SIGN_ROUNDS, sink) / 1e3;
+    }
+
+    private static double signContext(byte[] data, PrivateKey privateKey, PublicKey publicKey) {
+        CryptoContext context = CryptoContext.get();
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < SIGN_ROUNDS; ++i) {
+            byte[] sign = context.sign(data, privateKey);
+            sink += context.verify(data, sign, publicKey) ? 1 : 0;
+        }
+        return perOp(start, SIGN_ROUNDS, sink) / 1e3;
+    }
+
+    private static double perOp(long start, int rounds, int sink) {
+        double result = (double) (System.nanoTime() - start) / rounds;
+        // 使用sink避免循环被优化掉
+        return sink == Integer.MIN_VALUE ? -result : result;
+    }
+}
@@ -0,0 +1,39 @@
+package bench;
+
+import data.MerkleTree;
+import utils.Hash;
+
+/**
+ * 对比不同区块大小下顺序与并行构建Merkle树的耗时，叶子为现成的交易哈希，只计算各层内部节点
+ */
+public class MerkleTreeBenchmark {
+
+    private static final int[] SIZES = {1 << 10, 1 << 12, 1 << 14, 1 << 16, 1 << 18};
+
+    public static void main(String[] args) {
+        for (int round = 0; round < 3; ++round) {
+            for (int size : SIZES) {
+                Hash[] leaves = new Hash[size];
+                for (int i = 0; i < size; ++i) {
+                    leaves[i] = Hash.sha256(Integer.toString(i).getBytes());
+                }
+                int repeat = Math.max(1, (1 << 18) / size);
+                double sequential = time(leaves, false, repeat);
+                double parallel = time(leaves, true, repeat);
+                System.out.printf("%7d leaves: sequential %8.3f ms, parallel %8.3f ms (%.1fx)%n",
+                        size, sequential, parallel, sequential / parallel);
+            }
+        }
+    }
+
+    private static double time(Hash[] leaves, boolean parallel, int repeat) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; ++i) {
+            sink += MerkleTree.build(leaves, parallel).getRoot().hashCode();
+        }
+        double result = (System.nanoTime() - start) / 1e6 / repeat;
+        // 使用sink避免循环被优化掉
+        return sink == Integer.MIN_VALUE ? -result : result;
+    }
+}
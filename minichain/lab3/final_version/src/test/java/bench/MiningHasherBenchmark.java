@@ -0,0 +1,58 @@
+package bench;
+
+import data.BlockHeader;
+import utils.Hash;
+import utils.MiningHasher;
+
+import java.security.MessageDigest;
+
+/**
+ * 对比每次尝试都调用MessageDigest与使用midstate的MiningHasher的哈希速率
+ *
+ * 加上-XX:-UseSHA运行可观察JVM未启用SHA硬件指令时两者的差距
+ */
+public class MiningHasherBenchmark {
+
+    private static final long ATTEMPTS = 5_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        BlockHeader header = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        for (int round = 0; round < 3; ++round) {
+            System.out.printf("MessageDigest: %.2f MH/s%n", messageDigest(header));
+            System.out.printf("MiningHasher:  %.2f MH/s%n", miningHasher(header));
+        }
+    }
+
+    private static double messageDigest(BlockHeader header) throws Exception {
+        byte[] buffer = header.toBytes();
+        byte[] hash = new byte[32];
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        int sink = 0;
+        long start = System.nanoTime();
+        for (long nonce = 0; nonce < ATTEMPTS; ++nonce) {
+            BlockHeader.writeNonce(buffer, nonce);
+            digest.update(buffer);
+            digest.digest(hash, 0, hash.length);
+            sink += hash[0];
+        }
+        return rate(start, sink);
+    }
+
+    private static double miningHasher(BlockHeader header) {
+        MiningHasher hasher = new MiningHasher(header, true);
+        int sink = 0;
+        long start = System.nanoTime();
+        for (long nonce = 0; nonce < ATTEMPTS; ++nonce) {
+            sink += hasher.hash(nonce)[0];
+        }
+        return rate(start, sink);
+    }
+
+    private static double rate(long start, int sink) {
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return ATTEMPTS * 1e3 / elapsed;
+    }
+}
@@ -0,0 +1,58 @@
+package bench;
+
+import data.BlockHeader;
+import utils.Hash;
+import utils.MinerUtil;
+import utils.MiningHasher;
+import utils.MultiLaneHasher;
+import utils.Target;
+
+/**
+ * 对比单路MiningHasher与不同路数的MultiLaneHasher在单个线程上的哈希速率
+ *
+ * 加上-XX:UseAVX=0或-XX:-UseSuperWord运行可观察关闭SIMD后多路哈希器退化为标量循环时的速率
+ */
+public class MultiLaneHasherBenchmark {
+
+    private static final long ATTEMPTS = 8_000_000L;
+
+    public static void main(String[] args) {
+        BlockHeader header = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        // 不可能满足的目标值，每次尝试都走完整的检查
+        Target target = Target.fromBits(0x01010000);
+        for (int round = 0; round < 3; ++round) {
+            System.out.printf("MiningHasher:        %.2f MH/s%n", scalar(header, target));
+            for (int lanes : new int[]{8, 64, 256}) {
+                System.out.printf("MultiLaneHasher(%2d): %.2f MH/s%n", lanes, multiLane(header, target, lanes));
+            }
+        }
+    }
+
+    private static double scalar(BlockHeader header, Target target) {
+        MiningHasher hasher = new MiningHasher(header);
+        int sink = 0;
+        long start = System.nanoTime();
+        for (long nonce = 0; nonce < ATTEMPTS; ++nonce) {
+            sink += hasher.check(nonce, target) ? 1 : 0;
+        }
+        return rate(start, sink);
+    }
+
+    private static double multiLane(BlockHeader header, Target target, int lanes) {
+        MultiLaneHasher hasher = new MultiLaneHasher(header, lanes);
+        int sink = 0;
+        long start = System.nanoTime();
+        for (long nonce = 0; nonce < ATTEMPTS; nonce += lanes) {
+            sink += hasher.check(nonce, target);
+        }
+        return rate(start, sink);
+    }
+
+    private static double rate(long start, int sink) {
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return ATTEMPTS * 1e3 / elapsed;
+    }
+}
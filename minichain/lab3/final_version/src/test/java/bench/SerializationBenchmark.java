@@ -0,0 +1,49 @@
+package bench;
+
+import data.OutPoint;
+import data.Transaction;
+import data.UTXO;
+import utils.Hash;
+import utils.SecurityUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+
+/**
+ * 对比以toString()和以二进制编码计算交易哈希的编码长度与速率
+ */
+public class SerializationBenchmark {
+
+    private static final int ROUNDS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair sender = keyPairGenerator.generateKeyPair();
+        KeyPair receiver = keyPairGenerator.generateKeyPair();
+        OutPoint[] inputs = {new OutPoint(Hash.sha256("funding".getBytes()), 0)};
+        UTXO[] outUtxos = {new UTXO("1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa", 300, receiver.getPublic()),
+                new UTXO("1BvBMSEYstWetqTFn5Au4m4GFg7xJaNVN2", 9700, sender.getPublic())};
+        byte[] sign = SecurityUtil.signature(SecurityUtil.utxos2Bytes(inputs, outUtxos), sender.getPrivate());
+        Transaction transaction = new Transaction(inputs, outUtxos, sign, sender.getPublic(), System.currentTimeMillis());
+
+        System.out.println("toString size: " + transaction.toString().getBytes(StandardCharsets.UTF_8).length + " bytes");
+        System.out.println("binary size:   " + transaction.toBytes().length + " bytes");
+        for (int round = 0; round < 3; ++round) {
+            int sink = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; ++i) {
+                sink += SecurityUtil.sha256Digest(transaction.toString()).charAt(0);
+            }
+            long middle = System.nanoTime();
+            for (int i = 0; i < ROUNDS; ++i) {
+                sink += Hash.sha256(transaction.toBytes()).hashCode();
+            }
+            long end = System.nanoTime();
+            System.out.printf("toString hash: %.2f us/tx, binary hash: %.2f us/tx (%d)%n",
+                    (middle - start) / 1e3 / ROUNDS, (end - middle) / 1e3 / ROUNDS, sink & 1);
+        }
+    }
+}
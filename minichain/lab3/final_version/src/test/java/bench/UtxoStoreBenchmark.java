@@ -0,0 +1,121 @@
+package bench;
+
+import data.Account;
+import data.MappedUtxoStore;
+import data.MemoryUtxoStore;
+import data.OutPoint;
+import data.UTXO;
+import data.UtxoStore;
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+import utils.SecurityUtil;
+
+import java.io.File;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+
+/**
+ * 对比堆内和内存映射文件两种utxo存储的插入、查找、删除吞吐量以及插入后的堆占用
+ *
+ * 用法：UtxoStoreBenchmark [utxo个数，默认10000000] [memory|mapped|both，默认both]；
+ * 堆内存储在一千万个utxo时约需3GB堆，需用-Xmx4g运行
+ */
+public class UtxoStoreBenchmark {
+
+    private static final int ACCOUNTS = 64;
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String mode = args.length > 1 ? args[1] : "both";
+
+        // 每个utxo都由编码解码出来，与从网络或磁盘读入的utxo一样各自持有地址字符串和公钥哈希
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        byte[][] templates = new byte[ACCOUNTS][];
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+            String walletAddress = Account.walletAddress(SecurityUtil.hash160(publicKey.getEncoded()));
+            BinaryWriter writer = new BinaryWriter();
+            new UTXO(walletAddress, 1000 + i, publicKey).encode(writer);
+            templates[i] = writer.toByteArray();
+        }
+
+        if (!mode.equals("mapped")) {
+            run("memory", new MemoryUtxoStore(), entries, templates);
+        }
+        if (!mode.equals("memory")) {
+            File file = File.createTempFile("utxo", ".bin");
+            file.deleteOnExit();
+            run("mapped", new MappedUtxoStore(file, entries), entries, templates);
+        }
+    }
+
+    private static void run(String name, UtxoStore store, int entries, byte[][] templates) {
+        long baseHeap = usedHeap();
+        int sink = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; ++i) {
+            UTXO utxo = UTXO.decode(new BinaryReader(templates[i % templates.length]));
+            store.put(outPoint(i), utxo);
+        }
+        long insert = System.nanoTime() - start;
+        long heap = usedHeap() - baseHeap;
+
+        start = System.nanoTime();
+        for (int i = 0; i < entries; ++i) {
+            sink += store.get(outPoint(i)).getAmount();
+        }
+        long hit = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = entries; i < 2 * entries; ++i) {
+            sink += store.get(outPoint(i)) == null ? 0 : 1;
+        }
+        long miss = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < entries; i += 2) {
+            sink += store.remove(outPoint(i)).getAmount();
+        }
+        long remove = System.nanoTime() - start;
+
+        System.out.printf("%s: %d utxos, heap %.1f MB (%.0f bytes/utxo)%n", name, entries, heap / 1e6,
+                (double) heap / entries);
+        System.out.printf("  insert %6.2f M ops/s, hit %6.2f M ops/s, miss %6.2f M ops/s, remove %6.2f M ops/s%n",
+                entries * 1e3 / insert, entries * 1e3 / hit, entries * 1e3 / miss, (entries + 1) / 2 * 1e3 / remove);
+        // 使用sink避免循环被优化掉
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * 由序号生成分布均匀的交易哈希，代价远小于SHA256
+     */
+    private static OutPoint outPoint(int i) {
+        byte[] bytes = new byte[Hash.SIZE];
+        long x = i;
+        for (int j = 0; j < Hash.SIZE; j += 8) {
+            x += 0x9e3779b97f4a7c15L;
+            long z = x;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            z ^= z >>> 31;
+            for (int k = 0; k < 8; ++k) {
+                bytes[j + k] = (byte) (z >>> (k * 8));
+            }
+        }
+        return new OutPoint(Hash.of(bytes), i & 3);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,204 @@
+package unit;
+
+import config.MiniChainConfig;
+import consensus.InstantSealEngine;
+import consensus.ProofOfWorkEngine;
+import consensus.SealTask;
+import data.Account;
+import data.Block;
+import data.BlockBody;
+import data.BlockChain;
+import data.BlockHeader;
+import data.MerkleTree;
+import data.OutPoint;
+import data.Transaction;
+import data.UTXO;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+import utils.MinerUtil;
+import utils.SecurityUtil;
+import utils.Target;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.concurrent.locks.Lock;
+
+public class BlockChainTest {
+
+    private static final long EXPECTED_TIMESPAN = MiniChainConfig.TARGET_BLOCK_INTERVAL * MiniChainConfig.RETARGET_INTERVAL;
+
+    @Test
+    public void nextBitsClampTest() {
+        BigInteger initTarget = Target.fromBits(MinerUtil.INIT_BITS).toBigInteger();
+        BlockChain blockChain = simulatedChain();
+
+        // 第一个调整周期内不调整难度
+        while (blockChain.getHeight() + 1 < 2 * MiniChainConfig.RETARGET_INTERVAL) {
+            Assert.assertEquals(MinerUtil.INIT_BITS, blockChain.getNextBits());
+            append(blockChain, MinerUtil.INIT_BITS, 1);
+        }
+        // 出块远快于目标间隔，单次调整最多把目标值降为1/4
+        int quarterBits = blockChain.getNextBits();
+        Assert.assertEquals(initTarget.shiftRight(2), Target.fromBits(quarterBits).toBigInteger());
+
+        // 不在调整周期的边界上，沿用上一区块的目标值
+        append(blockChain, quarterBits, 1);
+        Assert.assertEquals(quarterBits, blockChain.getNextBits());
+
+        // 出块远慢于目标间隔，单次调整最多把目标值升为4倍，且不超过初始目标值
+        while (blockChain.getHeight() + 1 < 3 * MiniChainConfig.RETARGET_INTERVAL) {
+            append(blockChain, quarterBits, EXPECTED_TIMESPAN);
+        }
+        Assert.assertEquals(MinerUtil.INIT_BITS, blockChain.getNextBits());
+    }
+
+    @Test
+    public void nextBitsLimitTest() {
+        BlockChain blockChain = simulatedChain();
+        while (blockChain.getHeight() + 1 < 2 * MiniChainConfig.RETARGET_INTERVAL) {
+            append(blockChain, MinerUtil.INIT_BITS, EXPECTED_TIMESPAN);
+        }
+        // 已是初始目标值时出块再慢也不降低难度
+        Assert.assertEquals(MinerUtil.INIT_BITS, blockChain.getNextBits());
+
+        // 连续出块过快时难度逐周期上升，每个周期目标值降为1/4
+        int bits = MinerUtil.INIT_BITS;
+        for (int period = 3; period <= 5; ++period) {
+            BigInteger target = Target.fromBits(bits).toBigInteger();
+            int nextBits = bits;
+            while (blockChain.getHeight() + 1 < period * MiniChainConfig.RETARGET_INTERVAL) {
+                append(blockChain, nextBits, 1);
+                nextBits = blockChain.getNextBits();
+            }
+            Assert.assertEquals(target.shiftRight(2), Target.fromBits(nextBits).toBigInteger());
+            bits = nextBits;
+        }
+    }
+
+    @Test
+    public void merkleRootTest() throws Exception {
+        ProofOfWorkEngine engine = new ProofOfWorkEngine();
+        BlockChain blockChain = new BlockChain(new ArrayList<Account>(), engine);
+        PublicKey publicKey = SecurityUtil.secp256r1Generate().getPublic();
+        String address = Account.walletAddress(SecurityUtil.hash160(publicKey.getEncoded()));
+        Transaction[] transactions = {new Transaction(new OutPoint[]{},
+                new UTXO[]{new UTXO(address, 10, publicKey)}, null, publicKey, 1)};
+        Transaction[] tampered = {new Transaction(new OutPoint[]{},
+                new UTXO[]{new UTXO(address, 1000, publicKey)}, null, publicKey, 1)};
+        BlockBody blockBody = new BlockBody(MerkleTree.build(transactions), transactions);
+        Block block = new Block(new BlockHeader(new BlockHeader(blockChain.getLatestBlock().getHash(),
+                blockBody.getMerkleRootHash(), blockChain.getNextBits(), 0), blockChain.getMinTimestamp()), blockBody);
+        BlockHeader sealed = engine.seal(new SealTask(block, 1, null)).getBlockHeader();
+
+        // 工作量证明有效的区块头配上篡改过的区块体：区块体沿用原来的Merkle根，或换成由篡改后交易算出的根
+        Assert.assertFalse(issue(blockChain, new Block(sealed,
+                new BlockBody(blockBody.getMerkleRootHash(), tampered))));
+        Assert.assertFalse(issue(blockChain, new Block(sealed,
+                new BlockBody(MerkleTree.build(tampered), tampered))));
+        Assert.assertEquals(0, blockChain.getHeight());
+
+        Assert.assertTrue(issue(blockChain, new Block(sealed, blockBody)));
+        Assert.assertEquals(10, blockChain.getTotalAmount());
+    }
+
+    @Test
+    public void issuanceTest() throws Exception {
+        BlockChain blockChain = new BlockChain(new ArrayList<Account>(), new InstantSealEngine());
+        PublicKey publicKey = SecurityUtil.secp256r1Generate().getPublic();
+        String address = Account.walletAddress(SecurityUtil.hash160(publicKey.getEncoded()));
+        Transaction coinbase = new Transaction(new OutPoint[]{},
+                new UTXO[]{new UTXO(address, 10, publicKey)}, null, publicKey, 1);
+
+        // 普通区块中不能有发行交易，没有持有挖矿锁的写锁时不能添加发行区块
+        Assert.assertFalse(blockChain.addNewBlock(block(blockChain, coinbase)));
+        try {
+            blockChain.addIssuanceBlock(block(blockChain, coinbase));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(0, blockChain.getHeight());
+        }
+        Assert.assertTrue(issue(blockChain, block(blockChain, coinbase)));
+
+        // 已在链上的交易不能再次上链
+        Transaction other = new Transaction(new OutPoint[]{},
+                new UTXO[]{new UTXO(address, 5, publicKey)}, null, publicKey, 2);
+        Assert.assertFalse(issue(blockChain, block(blockChain, other, coinbase)));
+        Assert.assertEquals(1, blockChain.getHeight());
+        Assert.assertEquals(10, blockChain.getTotalAmount());
+    }
+
+    @Test
+    public void timestampTest() {
+        BlockChain blockChain = new BlockChain(new ArrayList<Account>(), new InstantSealEngine());
+        long genesisTimestamp = blockChain.getLatestBlock().getBlockHeader().getTimestamp();
+        Assert.assertEquals(genesisTimestamp + 1, blockChain.getMinTimestamp());
+
+        // 不晚于最近区块时间戳的中位数
+        Assert.assertFalse(blockChain.addNewBlock(emptyBlock(blockChain, genesisTimestamp)));
+        // 比当前时间晚太多
+        long future = System.currentTimeMillis() + MiniChainConfig.MAX_FUTURE_BLOCK_TIME + 60 * 1000;
+        Assert.assertFalse(blockChain.addNewBlock(emptyBlock(blockChain, future)));
+        Assert.assertEquals(0, blockChain.getHeight());
+
+        for (int i = 1; i <= 3; ++i) {
+            Assert.assertTrue(blockChain.addNewBlock(emptyBlock(blockChain, genesisTimestamp + 10 * i)));
+        }
+        // 时间戳只需晚于中位数，可以早于最新区块
+        long median = genesisTimestamp + 20;
+        Assert.assertEquals(median + 1, blockChain.getMinTimestamp());
+        Assert.assertFalse(blockChain.addNewBlock(emptyBlock(blockChain, median)));
+        Assert.assertTrue(blockChain.addNewBlock(emptyBlock(blockChain, median + 1)));
+    }
+
+    /**
+     * 模拟的区块时间戳远超当前时间，以一天之后作为检查时间戳时的当前时间
+     */
+    private static BlockChain simulatedChain() {
+        return new BlockChain(new ArrayList<Account>(), new InstantSealEngine()) {
+            @Override
+            protected long currentTimeMillis() {
+                return System.currentTimeMillis() + 24L * 60 * 60 * 1000;
+            }
+        };
+    }
+
+    private static Block emptyBlock(BlockChain blockChain, long timestamp) {
+        BlockHeader blockHeader = new BlockHeader(new BlockHeader(blockChain.getLatestBlock().getHash(), null,
+                blockChain.getNextBits(), 0), timestamp);
+        return new Block(blockHeader, new BlockBody((Hash) null, new Transaction[]{}));
+    }
+
+    /**
+     * 像网络直接出块一样，持有挖矿锁的写锁添加发行区块
+     */
+    private static boolean issue(BlockChain blockChain, Block block) {
+        Lock lock = blockChain.getMineLock().writeLock();
+        lock.lock();
+        try {
+            return blockChain.addIssuanceBlock(block);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Block block(BlockChain blockChain, Transaction... transactions) {
+        BlockBody blockBody = new BlockBody(MerkleTree.build(transactions), transactions);
+        BlockHeader blockHeader = new BlockHeader(blockChain.getLatestBlock().getHash(), blockBody.getMerkleRootHash(),
+                blockChain.getNextBits(), 0);
+        long timestamp = Math.max(blockHeader.getTimestamp(), blockChain.getMinTimestamp());
+        return new Block(new BlockHeader(blockHeader, timestamp), blockBody);
+    }
+
+    /**
+     * 在链尾追加一个空区块，时间戳为上一区块的时间戳加上interval
+     */
+    private static void append(BlockChain blockChain, int bits, long interval) {
+        Block latestBlock = blockChain.getLatestBlock();
+        BlockHeader blockHeader = new BlockHeader(new BlockHeader(latestBlock.getHash(), null, bits, 0),
+                latestBlock.getBlockHeader().getTimestamp() + interval);
+        Assert.assertTrue(blockChain.addNewBlock(new Block(blockHeader,
+                new BlockBody((Hash) null, new Transaction[]{}))));
+    }
+}
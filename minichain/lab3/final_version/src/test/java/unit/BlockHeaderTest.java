@@ -0,0 +1,115 @@
+package unit;
+
+import data.Block;
+import data.BlockBody;
+import data.BlockHeader;
+import data.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+import utils.MinerUtil;
+import utils.MiningHasher;
+import utils.MultiLaneHasher;
+import utils.SecurityUtil;
+import utils.Sha256;
+import utils.Target;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+public class BlockHeaderTest {
+
+    @Test
+    public void toBytesTest() {
+        Hash preBlockHash = Hash.sha256("pre".getBytes());
+        BlockHeader blockHeader = new BlockHeader(preBlockHash, null, 0x0102030405060708L);
+        byte[] bytes = blockHeader.toBytes();
+
+        Assert.assertEquals(BlockHeader.HEADER_SIZE, bytes.length);
+        Assert.assertEquals(1, bytes[3]);
+        Assert.assertArrayEquals(preBlockHash.toBytes(), Arrays.copyOfRange(bytes, 4, 36));
+        // 空的Merkle根以全0编码
+        for (int i = 36; i < 68; ++i) {
+            Assert.assertEquals(0, bytes[i]);
+        }
+        Assert.assertEquals(0x08, bytes[BlockHeader.HEADER_SIZE - 1]);
+    }
+
+    @Test
+    public void blockHashCacheTest() {
+        BlockHeader blockHeader = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        Block block = new Block(blockHeader, new BlockBody(blockHeader.getMerkleRootHash(), new Transaction[]{}));
+        Hash hash = block.getHash();
+        Assert.assertSame(hash, block.getHash());
+
+        // 修改nonce后缓存失效
+        blockHeader.setNonce(1);
+        Assert.assertNotEquals(hash, block.getHash());
+        Assert.assertEquals(MinerUtil.blockHash(block), block.getHash());
+    }
+
+    @Test
+    public void miningHasherTest() {
+        BlockHeader blockHeader = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        // midstate和MessageDigest两种计算方式的结果相同
+        for (boolean midstate : new boolean[]{true, false}) {
+            MiningHasher hasher = new MiningHasher(blockHeader, midstate);
+            for (long nonce = 0; nonce < 16; ++nonce) {
+                blockHeader.setNonce(nonce);
+                Assert.assertArrayEquals(SecurityUtil.sha256Digest(blockHeader.toBytes()), hasher.hash(nonce));
+            }
+        }
+    }
+
+    @Test
+    public void multiLaneHasherTest() {
+        BlockHeader blockHeader = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        MultiLaneHasher laneHasher = new MultiLaneHasher(blockHeader, 8);
+        MiningHasher hasher = new MiningHasher(blockHeader);
+        byte[] hash = new byte[Sha256.DIGEST_SIZE];
+        // 第0路的nonce跨过低32位的进位，覆盖nonce高位消息字不同的情况
+        long firstNonce = 0xfffffffcL;
+        laneHasher.compute(firstNonce);
+        for (int lane = 0; lane < 8; ++lane) {
+            blockHeader.setNonce(firstNonce + lane);
+            Sha256.toBytes(laneHasher.hash(lane), hash);
+            Assert.assertArrayEquals(SecurityUtil.sha256Digest(blockHeader.toBytes()), hash);
+        }
+
+        // 约一半的哈希满足该目标值，多路检查返回的应当是第一个满足的nonce
+        Target target = Target.fromBits(0x207fffff);
+        for (long nonce = 0; nonce < 64; nonce += 8) {
+            int expected = -1;
+            for (int lane = 0; lane < 8 && expected < 0; ++lane) {
+                expected = hasher.check(nonce + lane, target) ? lane : -1;
+            }
+            Assert.assertEquals(expected, laneHasher.check(nonce, target));
+        }
+    }
+
+    @Test
+    public void miningHasherAllocationTest() {
+        BlockHeader blockHeader = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        MiningHasher hasher = new MiningHasher(blockHeader, true);
+        // 一个不可能满足的目标值，使每次尝试都走完整的比较
+        Target target = Target.fromBits(0x01010000);
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        int found = 0;
+        for (long nonce = 0; nonce < 100000; ++nonce) {
+            found += hasher.check(nonce, target) ? 1 : 0;
+        }
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (long nonce = 0; nonce < 100000; ++nonce) {
+            found += hasher.check(nonce, target) ? 1 : 0;
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assert.assertEquals(0, found);
+        // 允许计数接口自身的少量分配，每次尝试平均远小于1字节
+        Assert.assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+}
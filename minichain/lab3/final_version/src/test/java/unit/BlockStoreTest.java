@@ -0,0 +1,72 @@
+package unit;
+
+import data.Block;
+import data.BlockBody;
+import data.BlockHeader;
+import data.BlockStore;
+import data.MerkleTree;
+import data.OutPoint;
+import data.Transaction;
+import data.UTXO;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BlockStoreTest {
+
+    @Test
+    public void loadTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        File file = File.createTempFile("blocks", ".bin");
+        Assert.assertTrue(file.delete());
+        file.deleteOnExit();
+        BlockStore store = new BlockStore(file);
+        Assert.assertTrue(store.load().isEmpty());
+
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(new Block(new BlockHeader(null, null, 7), new BlockBody((Hash) null, new Transaction[]{})));
+        for (int height = 1; height <= 3; ++height) {
+            Transaction transaction = new Transaction(new OutPoint[]{},
+                    new UTXO[]{new UTXO("addr", height, publicKey)}, null, publicKey, height);
+            Transaction[] transactions = {transaction};
+            BlockBody blockBody = new BlockBody(MerkleTree.build(transactions), transactions);
+            Hash preBlockHash = blocks.get(height - 1).getHash();
+            blocks.add(new Block(new BlockHeader(preBlockHash, blockBody.getMerkleRootHash(), height), blockBody));
+        }
+        for (Block block : blocks) {
+            store.append(block);
+        }
+        assertSameChain(blocks, new BlockStore(file).load());
+
+        // 最后一条记录写了一半时截掉它，之后追加的区块接在完整的记录后面
+        long length = file.length();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length - 5);
+        }
+        List<Block> loaded = new BlockStore(file).load();
+        assertSameChain(blocks.subList(0, 3), loaded);
+        Assert.assertTrue(file.length() < length - 5);
+        store.append(blocks.get(3));
+        assertSameChain(blocks, new BlockStore(file).load());
+    }
+
+    private static void assertSameChain(List<Block> expected, List<Block> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertEquals(expected.get(i).getHash(), actual.get(i).getHash());
+            Assert.assertEquals(expected.get(i).getBlockBody().getMerkleRootHash(),
+                    actual.get(i).getBlockBody().getMerkleRootHash());
+        }
+    }
+}
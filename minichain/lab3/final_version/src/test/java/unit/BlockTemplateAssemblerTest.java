@@ -0,0 +1,101 @@
+package unit;
+
+import config.MiniChainConfig;
+import consensus.BlockTemplateAssembler;
+import consensus.InstantSealEngine;
+import consensus.MinerPeer;
+import data.Account;
+import data.Block;
+import data.BlockBody;
+import data.BlockChain;
+import data.BlockHeader;
+import data.MerkleTree;
+import data.OutPoint;
+import data.Transaction;
+import data.TransactionPool;
+import data.UTXO;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.SecurityUtil;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+public class BlockTemplateAssemblerTest {
+
+    private static final int BATCH = MiniChainConfig.MAX_TRANSACTION_COUNT;
+
+    @Test(timeout = 10000)
+    public void templateTest() throws Exception {
+        KeyPair keyPair = SecurityUtil.secp256r1Generate();
+        String address = Account.walletAddress(SecurityUtil.hash160(keyPair.getPublic().getEncoded()));
+
+        // 发行一笔交易，为之后的每笔转账各准备一个输入
+        BlockChain blockChain = new BlockChain(new ArrayList<Account>(), new InstantSealEngine());
+        UTXO[] funds = new UTXO[3 * BATCH];
+        for (int i = 0; i < funds.length; ++i) {
+            funds[i] = new UTXO(address, 100, keyPair.getPublic());
+        }
+        Transaction coinbase = new Transaction(new OutPoint[]{}, funds, null, keyPair.getPublic(), 0);
+        Lock lock = blockChain.getMineLock().writeLock();
+        lock.lock();
+        try {
+            Assert.assertTrue(blockChain.addIssuanceBlock(block(blockChain, body(new Transaction[]{coinbase}))));
+        } finally {
+            lock.unlock();
+        }
+
+        TransactionPool transactionPool = new TransactionPool(BATCH);
+        MinerPeer first = new MinerPeer(blockChain, null);
+        MinerPeer second = new MinerPeer(blockChain, null);
+        List<MinerPeer> minerPeers = Arrays.asList(first, second);
+        new BlockTemplateAssembler(minerPeers, transactionPool).start();
+
+        // 同一个模板交给每个矿工
+        fill(transactionPool, keyPair, coinbase, 0);
+        BlockBody blockBody = first.nextTemplate();
+        Assert.assertEquals(BATCH, blockBody.getTransactions().length);
+        Assert.assertSame(blockBody, second.nextTemplate());
+
+        // 第二个矿工取到模板时第一个矿工也已收到，随后该模板被打包上链
+        fill(transactionPool, keyPair, coinbase, 1);
+        BlockBody stale = second.nextTemplate();
+        Assert.assertTrue(blockChain.addNewBlock(block(blockChain, stale)));
+
+        // 过期的模板被丢弃，两个矿工都拿到新模板
+        fill(transactionPool, keyPair, coinbase, 2);
+        BlockBody fresh = first.nextTemplate();
+        Assert.assertNotSame(stale, fresh);
+        Assert.assertFalse(blockChain.containsBlockBody(fresh));
+        Assert.assertSame(fresh, second.nextTemplate());
+    }
+
+    /**
+     * 放入第batch批转账交易，每笔花费发行交易的一个输出，放满后唤醒组装线程
+     */
+    private static void fill(TransactionPool transactionPool, KeyPair keyPair, Transaction coinbase, int batch) {
+        synchronized (transactionPool) {
+            for (int i = batch * BATCH; i < (batch + 1) * BATCH; ++i) {
+                OutPoint[] inputs = {coinbase.getOutPoint(i)};
+                UTXO[] outUtxos = {new UTXO(coinbase.getOutUtxos()[i].getWalletAddress(), 100, keyPair.getPublic())};
+                byte[] sign = SecurityUtil.signature(SecurityUtil.sigHash(inputs, outUtxos), keyPair.getPrivate());
+                transactionPool.put(new Transaction(inputs, outUtxos, sign, keyPair.getPublic(), i + 1));
+            }
+            transactionPool.notifyAll();
+        }
+    }
+
+    private static BlockBody body(Transaction[] transactions) {
+        return new BlockBody(MerkleTree.build(transactions), transactions);
+    }
+
+    private static Block block(BlockChain blockChain, BlockBody blockBody) {
+        BlockHeader blockHeader = new BlockHeader(blockChain.getLatestBlock().getHash(), blockBody.getMerkleRootHash(),
+                blockChain.getNextBits(), 0);
+        long timestamp = Math.max(blockHeader.getTimestamp(), blockChain.getMinTimestamp());
+        return new Block(new BlockHeader(blockHeader, timestamp), blockBody);
+    }
+}
@@ -0,0 +1,89 @@
+package unit;
+
+import consensus.AuthorityRoundEngine;
+import consensus.InstantSealEngine;
+import consensus.ProofOfWorkEngine;
+import consensus.SealTask;
+import data.Account;
+import data.Block;
+import data.BlockBody;
+import data.BlockChain;
+import data.BlockHeader;
+import data.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+import utils.MinerUtil;
+
+import java.util.ArrayList;
+
+public class ConsensusEngineTest {
+
+    @Test
+    public void instantSealTest() {
+        InstantSealEngine engine = new InstantSealEngine();
+        BlockChain blockChain = new BlockChain(new ArrayList<Account>(), engine);
+        Block template = template(blockChain);
+        Assert.assertSame(template, engine.seal(new SealTask(template, 1, blockChain)));
+        Assert.assertTrue(engine.verify(template, 1, blockChain));
+        // 链上已有同高度的区块
+        Assert.assertNull(engine.seal(new SealTask(template(blockChain), 0, blockChain)));
+    }
+
+    @Test
+    public void authorityRoundTest() {
+        AuthorityRoundEngine engine = new AuthorityRoundEngine(3);
+        BlockChain blockChain = new BlockChain(new ArrayList<Account>(), engine);
+        Block template = template(blockChain);
+        Hash unsignedHash = template.getHash();
+        Block block = engine.seal(new SealTask(template, 1, blockChain));
+        Assert.assertNotNull(block.getBlockHeader().getSignature());
+        Assert.assertTrue(engine.verify(block, 1, blockChain));
+        // 签名参与区块哈希的计算
+        Assert.assertNotEquals(unsignedHash, block.getHash());
+
+        // 不是轮到的签名节点
+        Assert.assertFalse(engine.verify(block, 2, blockChain));
+        // 签名后区块头被改动
+        block.getBlockHeader().setNonce(block.getBlockHeader().getNonce() + 1);
+        Assert.assertFalse(engine.verify(block, 1, blockChain));
+        // 没有签名
+        Assert.assertFalse(engine.verify(template(blockChain), 1, blockChain));
+
+        Block stale = template(blockChain);
+        Assert.assertNull(engine.seal(new SealTask(stale, 0, blockChain)));
+        Assert.assertNull(stale.getBlockHeader().getSignature());
+    }
+
+    @Test
+    public void proofOfWorkTest() {
+        ProofOfWorkEngine engine = new ProofOfWorkEngine();
+        BlockChain blockChain = new BlockChain(new ArrayList<Account>(), engine);
+        Block block = engine.seal(new SealTask(template(blockChain), 1, null));
+        Assert.assertTrue(MinerUtil.checkProofOfWork(block));
+        Assert.assertTrue(engine.verify(block, 1, blockChain));
+        Assert.assertTrue(blockChain.addNewBlock(block));
+        Assert.assertSame(block, blockChain.getLatestBlock());
+
+        // 找一个不满足目标值的nonce
+        Block invalid = template(blockChain);
+        while (MinerUtil.checkProofOfWork(invalid)) {
+            invalid.getBlockHeader().setNonce(invalid.getBlockHeader().getNonce() + 1);
+        }
+        Assert.assertFalse(engine.verify(invalid, 2, blockChain));
+
+        // 目标值与难度调整的结果不符
+        BlockHeader latest = blockChain.getLatestBlock().getBlockHeader();
+        Block wrongBits = new Block(new BlockHeader(blockChain.getLatestBlock().getHash(), null,
+                latest.getBits() + 1, 0), new BlockBody((Hash) null, new Transaction[]{}));
+        Assert.assertFalse(engine.verify(engine.seal(new SealTask(wrongBits, 2, null)), 2, blockChain));
+
+        Assert.assertNull(engine.seal(new SealTask(template(blockChain), 1, blockChain)));
+    }
+
+    private static Block template(BlockChain blockChain) {
+        BlockHeader blockHeader = new BlockHeader(new BlockHeader(blockChain.getLatestBlock().getHash(), null,
+                blockChain.getNextBits(), 0), blockChain.getMinTimestamp());
+        return new Block(blockHeader, new BlockBody((Hash) null, new Transaction[]{}));
+    }
+}
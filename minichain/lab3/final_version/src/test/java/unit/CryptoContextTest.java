@@ -0,0 +1,83 @@
+package unit;
+
+import data.OutPoint;
+import data.Transaction;
+import data.UTXO;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.CryptoContext;
+import utils.Hash;
+import utils.SecurityUtil;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CryptoContextTest {
+
+    @Test
+    public void sha256Test() throws Exception {
+        byte[] data = "minichain".getBytes();
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+        CryptoContext context = CryptoContext.get();
+        Assert.assertArrayEquals(expected, context.sha256(data));
+        // 重复调用得到相同结果，引擎在每次使用后被重置
+        Assert.assertArrayEquals(expected, context.sha256(data));
+        Assert.assertArrayEquals(expected, context.sha256(ByteBuffer.wrap(data)));
+        Assert.assertArrayEquals(expected, context.sha256("mini".getBytes(), "chain".getBytes()));
+        Assert.assertArrayEquals(expected, context.sha256("xxminichainxx".getBytes(), 2, data.length));
+        Assert.assertArrayEquals(expected, SecurityUtil.sha256Digest(data));
+    }
+
+    @Test
+    public void signTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        byte[] data = "minichain".getBytes();
+
+        byte[] sign = SecurityUtil.signature(data, keyPair.getPrivate());
+        Assert.assertTrue(SecurityUtil.verify(data, sign, keyPair.getPublic()));
+        Assert.assertTrue(CryptoContext.get().verify(ByteBuffer.wrap(data), sign, keyPair.getPublic()));
+        Assert.assertFalse(SecurityUtil.verify("minichain!".getBytes(), sign, keyPair.getPublic()));
+    }
+
+    @Test
+    public void sigHashTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        OutPoint[] ins = {new OutPoint(Hash.sha256("funding".getBytes()), 0)};
+        UTXO[] outs = {new UTXO("receiver", 300, keyPair.getPublic()), new UTXO("sender", 9700, keyPair.getPublic())};
+        byte[] data = SecurityUtil.utxos2Bytes(ins, outs);
+
+        Hash sigHash = SecurityUtil.sigHash(ins, outs);
+        Assert.assertEquals(Hash.sha256(data), sigHash);
+        Transaction transaction = new Transaction(ins, outs, null, keyPair.getPublic(), 0);
+        Assert.assertEquals(sigHash, transaction.getSigHash());
+        Assert.assertSame(transaction.getSigHash(), transaction.getSigHash());
+
+        // 对摘要的签名与对原数据的签名可以互相验证
+        Assert.assertTrue(SecurityUtil.verify(data, SecurityUtil.signature(sigHash, keyPair.getPrivate()), keyPair.getPublic()));
+        Assert.assertTrue(SecurityUtil.verify(sigHash, SecurityUtil.signature(data, keyPair.getPrivate()), keyPair.getPublic()));
+        Assert.assertFalse(SecurityUtil.verify(SecurityUtil.sigHash(new OutPoint[]{new OutPoint(ins[0].getTxHash(), 1)}, outs), SecurityUtil.signature(data, keyPair.getPrivate()), keyPair.getPublic()));
+    }
+
+    @Test
+    public void perThreadTest() throws Exception {
+        final AtomicReference<CryptoContext> other = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other.set(CryptoContext.get());
+            }
+        });
+        thread.start();
+        thread.join();
+        Assert.assertSame(CryptoContext.get(), CryptoContext.get());
+        Assert.assertNotSame(CryptoContext.get(), other.get());
+    }
+}
@@ -0,0 +1,46 @@
+package unit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+import utils.SecurityUtil;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class HashTest {
+
+    @Test
+    public void valueTest() {
+        byte[] bytes = SecurityUtil.sha256Digest("abc".getBytes());
+        Hash hash = Hash.of(bytes);
+        Assert.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", hash.toString());
+        Assert.assertEquals(hash, Hash.fromHex(hash.toString()));
+        Assert.assertEquals(hash, Hash.sha256("abc".getBytes()));
+        Assert.assertEquals(hash.hashCode(), Hash.fromHex(hash.toString()).hashCode());
+
+        // 创建后修改原数组不影响哈希值
+        bytes[0] = 0;
+        Assert.assertNotEquals(Hash.of(bytes), hash);
+        Assert.assertEquals(0xba, hash.toBytes()[0] & 0xff);
+
+        Set<Hash> set = new HashSet<>();
+        set.add(hash);
+        Assert.assertTrue(set.contains(Hash.sha256("abc".getBytes())));
+    }
+
+    @Test
+    public void merkleParentTest() {
+        Hash left = Hash.sha256("left".getBytes());
+        Hash right = Hash.sha256("right".getBytes());
+        byte[] data = new byte[Hash.SIZE * 2];
+        left.writeTo(data, 0);
+        right.writeTo(data, Hash.SIZE);
+        Assert.assertEquals(Hash.sha256(data), Hash.sha256(left, right));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidHexTest() {
+        Hash.fromHex("zz" + Hash.sha256("abc".getBytes()).toString().substring(2));
+    }
+}
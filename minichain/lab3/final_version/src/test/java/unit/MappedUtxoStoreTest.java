@@ -0,0 +1,132 @@
+package unit;
+
+import data.Account;
+import data.MappedUtxoStore;
+import data.MemoryUtxoStore;
+import data.OutPoint;
+import data.Transaction;
+import data.UTXO;
+import data.UtxoSet;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+import utils.SecurityUtil;
+
+import java.io.File;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+
+public class MappedUtxoStoreTest {
+
+    @Test
+    public void storeTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        UTXO[] templates = new UTXO[4];
+        for (int i = 0; i < templates.length; ++i) {
+            PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+            String walletAddress = Account.walletAddress(SecurityUtil.hash160(publicKey.getEncoded()));
+            templates[i] = new UTXO(walletAddress, 1000 + i, publicKey);
+        }
+
+        File file = File.createTempFile("utxo", ".bin");
+        file.deleteOnExit();
+        MappedUtxoStore mapped = new MappedUtxoStore(file);
+        MemoryUtxoStore memory = new MemoryUtxoStore();
+        // 随机插入和删除，容量从1024条记录多次翻倍，中途也会只清理墓碑
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; ++i) {
+            OutPoint outPoint = new OutPoint(Hash.sha256(Integer.toString(random.nextInt(3000)).getBytes()),
+                    random.nextInt(3));
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(memory.remove(outPoint), mapped.remove(outPoint));
+            } else {
+                UTXO utxo = templates[random.nextInt(templates.length)];
+                Assert.assertEquals(memory.put(outPoint, utxo), mapped.put(outPoint, utxo));
+            }
+            Assert.assertEquals(memory.size(), mapped.size());
+        }
+        Assert.assertTrue(mapped.getCapacity() > 1024);
+        for (int i = 0; i < 3000; ++i) {
+            for (int index = 0; index < 3; ++index) {
+                OutPoint outPoint = new OutPoint(Hash.sha256(Integer.toString(i).getBytes()), index);
+                UTXO expected = memory.get(outPoint);
+                UTXO actual = mapped.get(outPoint);
+                Assert.assertEquals(expected, actual);
+                if (actual != null) {
+                    // 由公钥哈希重新计算的钱包地址与原来的相同
+                    Assert.assertEquals(expected.getWalletAddress(), actual.getWalletAddress());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reopenAfterRehashTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+        UTXO utxo = new UTXO(Account.walletAddress(SecurityUtil.hash160(publicKey.getEncoded())), 5, publicKey);
+
+        File file = File.createTempFile("utxo", ".bin");
+        File rehashFile = new File(file.getPath() + ".rehash");
+        file.deleteOnExit();
+        rehashFile.deleteOnExit();
+        MappedUtxoStore mapped = new MappedUtxoStore(file);
+        for (int round = 0; round < 2; ++round) {
+            // 容量从1024条记录翻倍两次，映射的文件在file与file.rehash之间切换，旧文件随即删除
+            for (int i = 0; i < 2000; ++i) {
+                Assert.assertTrue(mapped.put(new OutPoint(Hash.sha256(Integer.toString(i).getBytes()), 0), utxo));
+            }
+            Assert.assertEquals(4096, mapped.getCapacity());
+            Assert.assertTrue(mapped.getFile().exists());
+            Assert.assertFalse((mapped.getFile().equals(file) ? rehashFile : file).exists());
+            for (int i = 0; i < 2000; ++i) {
+                Assert.assertEquals(utxo, mapped.get(new OutPoint(Hash.sha256(Integer.toString(i).getBytes()), 0)));
+            }
+
+            // 重新打开时清空，从构造时给定的文件重新开始
+            mapped = new MappedUtxoStore(file);
+            Assert.assertEquals(file, mapped.getFile());
+            Assert.assertFalse(rehashFile.exists());
+            Assert.assertEquals(0, mapped.size());
+            Assert.assertNull(mapped.get(new OutPoint(Hash.sha256("0".getBytes()), 0)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addressMismatchTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+        File file = File.createTempFile("utxo", ".bin");
+        file.deleteOnExit();
+        new MappedUtxoStore(file).check(new UTXO("a", 5, publicKey));
+    }
+
+    @Test
+    public void validateAddressTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+        String address = Account.walletAddress(SecurityUtil.hash160(publicKey.getEncoded()));
+        File file = File.createTempFile("utxo", ".bin");
+        file.deleteOnExit();
+        UtxoSet utxoSet = new UtxoSet(new MappedUtxoStore(file));
+
+        // 地址与公钥哈希不符的输出在validate时就被拒绝，链状态不变
+        Transaction foreign = new Transaction(new OutPoint[]{},
+                new UTXO[]{new UTXO(address, 5, publicKey), new UTXO("a", 5, publicKey)}, null, publicKey, 1);
+        try {
+            utxoSet.validate(new Transaction[]{foreign}, true);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(0, utxoSet.size());
+        }
+        Transaction own = new Transaction(new OutPoint[]{},
+                new UTXO[]{new UTXO(address, 5, publicKey)}, null, publicKey, 1);
+        utxoSet.validate(new Transaction[]{own}, true);
+    }
+}
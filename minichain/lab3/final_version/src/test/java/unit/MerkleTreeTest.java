@@ -0,0 +1,90 @@
+package unit;
+
+import data.MerkleTree;
+import org.junit.Assert;
+import org.junit.Test;
+import spv.Proof;
+import utils.Hash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MerkleTreeTest {
+
+    @Test
+    public void rootTest() {
+        for (int n = 1; n <= 17; ++n) {
+            Hash[] leaves = leaves(n);
+            MerkleTree tree = MerkleTree.build(leaves);
+            Assert.assertEquals(n, tree.getLeafCount());
+            Assert.assertEquals(naiveRoot(leaves), tree.getRoot());
+            Assert.assertEquals(tree.getRoot(), tree.getNode(tree.getLevels() - 1, 0));
+        }
+    }
+
+    @Test
+    public void pathTest() {
+        for (int n = 1; n <= 17; ++n) {
+            Hash[] leaves = leaves(n);
+            MerkleTree tree = MerkleTree.build(leaves);
+            for (int i = 0; i < n; ++i) {
+                // 与SpvPeer相同的方式沿路径计算根
+                Hash hash = leaves[i];
+                for (Proof.Node node : tree.getPath(i)) {
+                    hash = node.getOrientation() == Proof.Orientation.LEFT
+                            ? Hash.sha256(node.getTxHash(), hash) : Hash.sha256(hash, node.getTxHash());
+                }
+                Assert.assertEquals(tree.getRoot(), hash);
+            }
+        }
+    }
+
+    @Test
+    public void parallelTest() {
+        for (int n : new int[]{1, 1025, 4096, 5001}) {
+            Hash[] leaves = leaves(n);
+            MerkleTree sequential = MerkleTree.build(leaves, false);
+            MerkleTree parallel = MerkleTree.build(leaves, true);
+            Assert.assertEquals(sequential.getLevels(), parallel.getLevels());
+            // 并行构建的每个节点都与顺序构建的相同
+            for (int level = 0, count = n; level < sequential.getLevels(); ++level, count = (count + 1) / 2) {
+                for (int i = 0; i < count; ++i) {
+                    Assert.assertEquals(sequential.getNode(level, i), parallel.getNode(level, i));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLeafTest() {
+        MerkleTree.build(leaves(4)).getPath(4);
+    }
+
+    private static Hash[] leaves(int n) {
+        Hash[] leaves = new Hash[n];
+        for (int i = 0; i < n; ++i) {
+            leaves[i] = Hash.sha256(("tx" + i).getBytes());
+        }
+        return leaves;
+    }
+
+    /**
+     * 原先MinerPeer中逐层用列表计算根的做法
+     */
+    private static Hash naiveRoot(Hash[] leaves) {
+        List<Hash> list = new ArrayList<>();
+        for (Hash leaf : leaves) {
+            list.add(leaf);
+        }
+        while (list.size() != 1) {
+            List<Hash> newList = new ArrayList<>();
+            for (int i = 0; i < list.size(); i += 2) {
+                Hash left = list.get(i);
+                Hash right = i + 1 < list.size() ? list.get(i + 1) : left;
+                newList.add(Hash.sha256(left, right));
+            }
+            list = newList;
+        }
+        return list.get(0);
+    }
+}
@@ -0,0 +1,99 @@
+package unit;
+
+import data.MerkleTree;
+import org.junit.Assert;
+import org.junit.Test;
+import spv.MultiProof;
+import utils.Hash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MultiProofTest {
+
+    @Test
+    public void rootTest() {
+        Random random = new Random(1);
+        for (int n = 1; n <= 33; ++n) {
+            MerkleTree tree = MerkleTree.build(leaves(n));
+            for (int round = 0; round < 20; ++round) {
+                int[] positions = randomPositions(random, n);
+                List<Hash> hashes = tree.getMultiPath(positions);
+                Assert.assertEquals(tree.getRoot(), proof(tree, positions, hashes).computeRoot());
+
+                // 合并后的节点个数不超过各条路径之和
+                int separate = 0;
+                for (int position : positions) {
+                    separate += tree.getPath(position).size();
+                }
+                Assert.assertTrue(hashes.size() <= separate);
+            }
+        }
+    }
+
+    @Test
+    public void sharedNodesTest() {
+        // 全部叶子都待验证时无需任何其他节点
+        MerkleTree tree = MerkleTree.build(leaves(8));
+        Assert.assertTrue(tree.getMultiPath(new int[]{0, 1, 2, 3, 4, 5, 6, 7}).isEmpty());
+        // 0和1互为兄弟，只需第1层的1号节点和第2层的1号节点
+        Assert.assertEquals(2, tree.getMultiPath(new int[]{0, 1}).size());
+    }
+
+    @Test
+    public void tamperTest() {
+        MerkleTree tree = MerkleTree.build(leaves(13));
+        int[] positions = {2, 7, 12};
+        List<Hash> hashes = tree.getMultiPath(positions);
+
+        List<Hash> tampered = new ArrayList<>(hashes);
+        tampered.set(1, Hash.sha256("fake".getBytes()));
+        Assert.assertNotEquals(tree.getRoot(), proof(tree, positions, tampered).computeRoot());
+
+        Assert.assertNull(proof(tree, positions, hashes.subList(0, hashes.size() - 1)).computeRoot());
+        List<Hash> extra = new ArrayList<>(hashes);
+        extra.add(hashes.get(0));
+        Assert.assertNull(proof(tree, positions, extra).computeRoot());
+        Assert.assertNull(proof(tree, new int[]{7, 2, 12}, hashes).computeRoot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPositionsTest() {
+        MerkleTree.build(leaves(4)).getMultiPath(new int[]{1, 1});
+    }
+
+    private static MultiProof proof(MerkleTree tree, int[] positions, List<Hash> hashes) {
+        Hash[] txHashes = new Hash[positions.length];
+        for (int i = 0; i < positions.length; ++i) {
+            txHashes[i] = positions[i] >= 0 && positions[i] < tree.getLeafCount()
+                    ? tree.getNode(0, positions[i]) : Hash.sha256("none".getBytes());
+        }
+        return new MultiProof(0, tree.getRoot(), tree.getLeafCount(), positions, txHashes, hashes);
+    }
+
+    private static int[] randomPositions(Random random, int n) {
+        List<Integer> chosen = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            if (random.nextInt(3) == 0) {
+                chosen.add(i);
+            }
+        }
+        if (chosen.isEmpty()) {
+            chosen.add(random.nextInt(n));
+        }
+        int[] positions = new int[chosen.size()];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = chosen.get(i);
+        }
+        return positions;
+    }
+
+    private static Hash[] leaves(int n) {
+        Hash[] leaves = new Hash[n];
+        for (int i = 0; i < n; ++i) {
+            leaves[i] = Hash.sha256(("tx" + i).getBytes());
+        }
+        return leaves;
+    }
+}
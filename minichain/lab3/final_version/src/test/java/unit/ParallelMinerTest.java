@@ -0,0 +1,68 @@
+package unit;
+
+import consensus.ParallelMiner;
+import consensus.SealTask;
+import data.Block;
+import data.BlockBody;
+import data.BlockHeader;
+import data.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+import utils.MinerUtil;
+
+public class ParallelMinerTest {
+
+    @Test
+    public void mineTest() {
+        BlockHeader blockHeader = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        Block template = new Block(blockHeader, new BlockBody(blockHeader.getMerkleRootHash(), new Transaction[]{}));
+
+        SealTask task = new SealTask(template, 1, null);
+        Block block = new ParallelMiner(4).mine(task);
+
+        Assert.assertNotNull(block);
+        // 返回时所有工作线程都已退出，哈希次数不会在之后增加
+        long hashes = task.getHashes();
+        Assert.assertTrue(hashes > 0);
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        Assert.assertEquals(hashes, task.getHashes());
+        Assert.assertEquals(blockHeader.getTimestamp(), block.getBlockHeader().getTimestamp());
+        Assert.assertTrue(block.getHash().toString().startsWith("0000"));
+        Assert.assertTrue(MinerUtil.checkProofOfWork(block));
+    }
+
+    @Test
+    public void staleTest() {
+        BlockHeader blockHeader = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        Block template = new Block(blockHeader, new BlockBody(blockHeader.getMerkleRootHash(), new Transaction[]{}));
+        SealTask task = new SealTask(template, 1, null) {
+            @Override
+            public boolean isStale() {
+                return true;
+            }
+        };
+
+        Assert.assertNull(new ParallelMiner(4).mine(task));
+        Assert.assertEquals(0, task.getHashes());
+    }
+
+    @Test
+    public void rolloverTest() {
+        BlockHeader blockHeader = new BlockHeader(Hash.sha256("pre".getBytes()), Hash.sha256("root".getBytes()), 0);
+        Block template = new Block(blockHeader, new BlockBody(blockHeader.getMerkleRootHash(), new Transaction[]{}));
+
+        // 每个线程在一个区块头上只尝试16个nonce，需要多次滚动时间戳才能找到满足条件的区块
+        Block block = new ParallelMiner(2, 16).mine(new SealTask(template, 1, null));
+
+        Assert.assertNotNull(block);
+        Assert.assertTrue(block.getBlockHeader().getNonce() >= 0 && block.getBlockHeader().getNonce() < 32);
+        Assert.assertTrue(MinerUtil.checkProofOfWork(block));
+        Assert.assertEquals(0, blockHeader.getNonce());
+    }
+
+}
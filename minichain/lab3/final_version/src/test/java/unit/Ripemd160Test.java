@@ -0,0 +1,45 @@
+package unit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Ripemd160;
+import utils.SecurityUtil;
+
+import java.util.Arrays;
+
+public class Ripemd160Test {
+
+    @Test
+    public void vectorTest() {
+        // RIPEMD160原始论文中给出的测试向量
+        String[][] vectors = {
+                {"", "9c1185a5c5e9fc54612808977ee8f548b2258d31"},
+                {"a", "0bdc9d2d256b3ee9daae347be6f4dc835a467ffe"},
+                {"abc", "8eb208f7e05d987a9b044a8e98c6b087f15a0bfc"},
+                {"message digest", "5d0689ef49d2fae572b881b123a85ffa21595f36"},
+                {"abcdefghijklmnopqrstuvwxyz", "f71c27109c692c1b56bbdceb5b9d2865b3708dbc"},
+                {"abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopq", "12a053384a9c0c88e405a06c27dcf49ada62eb2b"},
+                {"12345678901234567890123456789012345678901234567890123456789012345678901234567890",
+                        "9b752e45573d4b39f4dbd3323cab82bf63326bfb"},
+        };
+        Ripemd160 ripemd160 = new Ripemd160();
+        for (String[] vector : vectors) {
+            Assert.assertEquals(vector[1], SecurityUtil.bytes2HexString(ripemd160.digest(vector[0].getBytes())));
+        }
+
+        byte[] million = new byte[1000000];
+        Arrays.fill(million, (byte) 'a');
+        Assert.assertEquals("52783243c1697bdbe16d37f97f68f08325dc1528",
+                SecurityUtil.bytes2HexString(SecurityUtil.ripemd160Digest(million)));
+    }
+
+    @Test
+    public void offsetTest() {
+        byte[] data = "xxabcxx".getBytes();
+        byte[] out = new byte[Ripemd160.DIGEST_SIZE + 2];
+        new Ripemd160().digest(data, 2, 3, out, 1);
+        Assert.assertEquals("8eb208f7e05d987a9b044a8e98c6b087f15a0bfc",
+                SecurityUtil.bytes2HexString(Arrays.copyOfRange(out, 1, 1 + Ripemd160.DIGEST_SIZE)));
+        Assert.assertEquals(20, SecurityUtil.hash160(data).length);
+    }
+}
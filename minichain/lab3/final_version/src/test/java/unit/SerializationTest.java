@@ -0,0 +1,102 @@
+package unit;
+
+import data.Account;
+import data.Block;
+import data.BlockBody;
+import data.BlockHeader;
+import data.OutPoint;
+import data.Transaction;
+import data.UTXO;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+import utils.SecurityUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+
+public class SerializationTest {
+
+    @Test
+    public void varIntTest() {
+        long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE, System.currentTimeMillis(), -1L};
+        BinaryWriter writer = new BinaryWriter(1);
+        for (long value : values) {
+            writer.writeVarInt(value);
+        }
+        BinaryReader reader = new BinaryReader(writer.toByteArray());
+        for (long value : values) {
+            Assert.assertEquals(value, reader.readVarInt());
+        }
+        Assert.assertEquals(0, reader.remaining());
+    }
+
+    @Test
+    public void blockRoundTripTest() throws Exception {
+        KeyPair sender = generate();
+        KeyPair receiver = generate();
+        UTXO[] outs = {new UTXO("receiver", 300, receiver.getPublic()), new UTXO("sender", 9700, sender.getPublic())};
+        OutPoint[] ins = {new OutPoint(Hash.sha256("funding".getBytes()), 3)};
+        byte[] sign = SecurityUtil.signature(SecurityUtil.utxos2Bytes(ins, outs), sender.getPrivate());
+        Transaction transaction = new Transaction(ins, outs, sign, sender.getPublic(), System.currentTimeMillis());
+
+        Transaction decoded = Transaction.decode(new BinaryReader(transaction.toBytes()));
+        Assert.assertArrayEquals(transaction.toBytes(), decoded.toBytes());
+        Assert.assertEquals(transaction.getTxHash(), decoded.getTxHash());
+        // 输入定长编码为36字节，解码后与原输出位置和utxo按值相等
+        Assert.assertEquals(ins[0], decoded.getInputs()[0]);
+        Assert.assertEquals(ins[0].hashCode(), decoded.getInputs()[0].hashCode());
+        Assert.assertEquals(outs[1], decoded.getOutUtxos()[1]);
+        Assert.assertNotEquals(outs[0], decoded.getOutUtxos()[1]);
+        BinaryWriter inputWriter = new BinaryWriter();
+        ins[0].encode(inputWriter);
+        Assert.assertEquals(OutPoint.SIZE, inputWriter.size());
+        // 解码后的交易签名仍然有效
+        Assert.assertTrue(SecurityUtil.verify(SecurityUtil.utxos2Bytes(decoded.getInputs(), decoded.getOutUtxos()),
+                decoded.getSendSign(), decoded.getSendPublicKey()));
+
+        BlockHeader blockHeader = new BlockHeader(null, transaction.getTxHash(), 0x1f00ffff, 42);
+        blockHeader.setSignature(new byte[]{1, 2, 3});
+        Block block = new Block(blockHeader, new BlockBody(transaction.getTxHash(), new Transaction[]{transaction}));
+        byte[] bytes = block.toBytes();
+        Block decodedBlock = Block.decode(new BinaryReader(bytes));
+        Assert.assertArrayEquals(bytes, decodedBlock.toBytes());
+        Assert.assertNull(decodedBlock.getBlockHeader().getPreBlockHash());
+        Assert.assertEquals(blockHeader.getTimestamp(), decodedBlock.getBlockHeader().getTimestamp());
+        // 二进制编码不到字符串形式的一半，公钥和签名本身无法压缩，省下的主要是十六进制和字段名
+        Assert.assertTrue(bytes.length * 2 < block.toString().getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedTest() throws Exception {
+        KeyPair sender = generate();
+        Transaction transaction = new Transaction(new OutPoint[]{}, new UTXO[]{new UTXO("a", 1, sender.getPublic())},
+                new byte[]{1}, sender.getPublic(), 0);
+        byte[] bytes = transaction.toBytes();
+        Transaction.decode(new BinaryReader(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    @Test
+    public void accountRoundTripTest() throws Exception {
+        BinaryWriter writer = new BinaryWriter();
+        KeyPair keyPair = generate();
+        // 账户的构造函数固定使用secp256k1，这里直接编码一对P-256密钥再解码
+        writer.writeVarBytes(keyPair.getPublic().getEncoded());
+        writer.writeVarBytes(keyPair.getPrivate().getEncoded());
+        Account account = Account.decode(new BinaryReader(writer.toByteArray()));
+        Assert.assertEquals(keyPair.getPublic(), account.getPublicKey());
+        Assert.assertEquals(keyPair.getPrivate(), account.getPrivateKey());
+    }
+
+    private static KeyPair generate() throws Exception {
+        // 部分JDK不再提供secp256k1，测试使用同为256位的P-256曲线
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        return keyPairGenerator.generateKeyPair();
+    }
+}
@@ -0,0 +1,27 @@
+package unit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import utils.SecurityUtil;
+import utils.Sha256;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class Sha256Test {
+
+    @Test
+    public void digestTest() {
+        Assert.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                SecurityUtil.bytes2HexString(Sha256.digest("abc".getBytes(StandardCharsets.UTF_8))));
+
+        // 覆盖补位跨越数据块边界的各种长度
+        Random random = new Random(0);
+        for (int length = 0; length < 200; ++length) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            Assert.assertArrayEquals(SecurityUtil.sha256Digest(data), Sha256.digest(data));
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package unit;
+
+import config.MiniChainConfig;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.MinerUtil;
+import utils.Target;
+
+import java.math.BigInteger;
+
+public class TargetTest {
+
+    @Test
+    public void bitsTest() {
+        // 比特币创世区块的目标值
+        Target target = Target.fromBits(0x1d00ffff);
+        Assert.assertEquals(BigInteger.valueOf(0xffff).shiftLeft(208), target.toBigInteger());
+        Assert.assertEquals(0x1d00ffff, Target.fromBigInteger(target.toBigInteger()).getBits());
+
+        Assert.assertEquals(0x1f00ffff, Target.fromDifficulty(4).getBits());
+        Assert.assertEquals(0x03123456, Target.fromBigInteger(BigInteger.valueOf(0x123456)).getBits());
+        Assert.assertEquals(0x04008000, Target.fromBigInteger(BigInteger.valueOf(0x800000)).getBits());
+    }
+
+    @Test
+    public void isMetByTest() {
+        Target target = Target.fromDifficulty(4);
+        byte[] hash = new byte[32];
+        int[] words = new int[8];
+        Assert.assertTrue(target.isMetBy(hash));
+        Assert.assertTrue(target.isMetBy(words));
+
+        hash[2] = (byte) 0xff;
+        words[0] = 0x0000ff00;
+        Assert.assertTrue(target.isMetBy(hash));
+        Assert.assertTrue(target.isMetBy(words));
+
+        hash[1] = 1;
+        words[0] = 0x0001ff00;
+        Assert.assertFalse(target.isMetBy(hash));
+        Assert.assertFalse(target.isMetBy(words));
+
+        // 高位为1的状态字需按无符号数比较
+        words[0] = 0x80000000;
+        Assert.assertFalse(target.isMetBy(words));
+    }
+
+    @Test
+    public void retargetTest() {
+        long expectedTimespan = MiniChainConfig.TARGET_BLOCK_INTERVAL * MiniChainConfig.RETARGET_INTERVAL;
+        BigInteger initTarget = Target.fromBits(MinerUtil.INIT_BITS).toBigInteger();
+
+        Assert.assertEquals(MinerUtil.INIT_BITS, MinerUtil.retarget(MinerUtil.INIT_BITS, expectedTimespan));
+        // 出块快一倍，目标值减半
+        int halfBits = MinerUtil.retarget(MinerUtil.INIT_BITS, expectedTimespan / 2);
+        Assert.assertEquals(initTarget.shiftRight(1), Target.fromBits(halfBits).toBigInteger());
+        // 单次调整最多为4倍
+        int quarterBits = MinerUtil.retarget(MinerUtil.INIT_BITS, 1);
+        Assert.assertEquals(initTarget.shiftRight(2), Target.fromBits(quarterBits).toBigInteger());
+        // 目标值不超过初始目标值
+        Assert.assertEquals(MinerUtil.INIT_BITS, MinerUtil.retarget(MinerUtil.INIT_BITS, expectedTimespan * 2));
+        Assert.assertEquals(MinerUtil.INIT_BITS, MinerUtil.retarget(halfBits, expectedTimespan * 4));
+    }
+
+}
@@ -0,0 +1,71 @@
+package unit;
+
+import data.Block;
+import data.BlockBody;
+import data.BlockHeader;
+import data.MerkleTree;
+import data.OutPoint;
+import data.Transaction;
+import data.TransactionIndex;
+import data.UTXO;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+
+import java.io.File;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+
+public class TransactionIndexTest {
+
+    @Test
+    public void indexTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        File file = File.createTempFile("txindex", ".bin");
+        file.deleteOnExit();
+        TransactionIndex index = new TransactionIndex(file);
+        Block[] blocks = new Block[3];
+        for (int height = 1; height < blocks.length; ++height) {
+            Transaction[] transactions = new Transaction[5];
+            for (int i = 0; i < transactions.length; ++i) {
+                transactions[i] = new Transaction(new OutPoint[]{}, new UTXO[]{new UTXO("addr", i, publicKey)},
+                        null, publicKey, height * 100 + i);
+            }
+            BlockBody blockBody = new BlockBody(MerkleTree.build(transactions), transactions);
+            blocks[height] = new Block(new BlockHeader(null, blockBody.getMerkleRootHash(), 0), blockBody);
+            index.add(blocks[height], height);
+        }
+        Assert.assertEquals(10, index.size());
+        Assert.assertNull(index.get(Hash.sha256("missing".getBytes())));
+
+        Assert.assertEquals(2, index.getHeight());
+
+        // 重新打开索引文件时载入已有的记录，新区块接着追加
+        TransactionIndex reopened = new TransactionIndex(file);
+        Assert.assertEquals(10, reopened.size());
+        Assert.assertEquals(2, reopened.getHeight());
+        Transaction extra = new Transaction(new OutPoint[]{}, new UTXO[]{new UTXO("addr", 7, publicKey)},
+                null, publicKey, 300);
+        BlockBody extraBody = new BlockBody(MerkleTree.build(new Transaction[]{extra}), new Transaction[]{extra});
+        reopened.add(new Block(new BlockHeader(null, extraBody.getMerkleRootHash(), 0), extraBody), 3);
+
+        TransactionIndex loaded = TransactionIndex.load(file);
+        Assert.assertEquals(11, loaded.size());
+        Assert.assertEquals(3, loaded.getHeight());
+        Assert.assertEquals(3, loaded.get(extra.getTxHash()).getHeight());
+        for (int height = 1; height < blocks.length; ++height) {
+            Transaction[] transactions = blocks[height].getBlockBody().getTransactions();
+            for (int i = 0; i < transactions.length; ++i) {
+                for (TransactionIndex idx : new TransactionIndex[]{index, reopened, loaded}) {
+                    TransactionIndex.Location location = idx.get(transactions[i].getTxHash());
+                    Assert.assertEquals(height, location.getHeight());
+                    Assert.assertEquals(i, location.getPosition());
+                }
+            }
+        }
+    }
+}
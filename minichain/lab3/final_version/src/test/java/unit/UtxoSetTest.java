@@ -0,0 +1,167 @@
+package unit;
+
+import data.Block;
+import data.BlockBody;
+import data.BlockHeader;
+import data.MemoryUtxoStore;
+import data.MerkleTree;
+import data.OutPoint;
+import data.Transaction;
+import data.UTXO;
+import data.UtxoSet;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.BinaryReader;
+import utils.BinaryWriter;
+import utils.Hash;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+
+public class UtxoSetTest {
+
+    @Test
+    public void applyTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        UtxoSet utxoSet = new UtxoSet();
+        UTXO a = new UTXO("a", 10, publicKey);
+        UTXO b = new UTXO("b", 20, publicKey);
+        Transaction coinbase = new Transaction(new OutPoint[]{}, new UTXO[]{a, b}, null, publicKey, 1);
+        utxoSet.apply(block(coinbase));
+        Assert.assertEquals(2, utxoSet.size());
+        Assert.assertSame(b, utxoSet.get(new OutPoint(coinbase.getTxHash(), 1)));
+        Assert.assertEquals(10, utxoSet.getBalance("a"));
+        Assert.assertEquals(30, utxoSet.getTotalAmount());
+
+        // 同一区块中第二笔交易花费第一笔交易的输出
+        UTXO c = new UTXO("c", 10, publicKey);
+        UTXO d = new UTXO("b", 10, publicKey);
+        Transaction first = new Transaction(new OutPoint[]{coinbase.getOutPoint(0)}, new UTXO[]{c}, null, publicKey, 2);
+        Transaction second = new Transaction(new OutPoint[]{first.getOutPoint(0)}, new UTXO[]{d}, null, publicKey, 3);
+        utxoSet.apply(block(first, second));
+
+        Assert.assertEquals(2, utxoSet.size());
+        Assert.assertNull(utxoSet.get(new OutPoint(coinbase.getTxHash(), 0)));
+        Assert.assertNull(utxoSet.get(new OutPoint(first.getTxHash(), 0)));
+        Assert.assertSame(d, utxoSet.get(new OutPoint(second.getTxHash(), 0)));
+        Assert.assertEquals(0, utxoSet.getUtxos("a").size());
+        Assert.assertEquals(2, utxoSet.getUtxos("b").size());
+        Assert.assertEquals(0, utxoSet.getBalance("a"));
+        Assert.assertEquals(0, utxoSet.getBalance("c"));
+        Assert.assertEquals(30, utxoSet.getBalance("b"));
+        Assert.assertEquals(30, utxoSet.getTotalAmount());
+        // 重新构造的输出位置同样可以查到utxo
+        Assert.assertTrue(utxoSet.getUtxos("b").containsKey(new OutPoint(Hash.of(second.getTxHash().toBytes()), 0)));
+    }
+
+    @Test
+    public void validateTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey alice = keyPairGenerator.generateKeyPair().getPublic();
+        PublicKey bob = keyPairGenerator.generateKeyPair().getPublic();
+
+        UtxoSet utxoSet = new UtxoSet();
+        Transaction coinbase = new Transaction(new OutPoint[]{},
+                new UTXO[]{new UTXO("alice", 10, alice), new UTXO("bob", 20, bob)}, null, alice, 1);
+        utxoSet.validate(new Transaction[]{coinbase}, true);
+        utxoSet.apply(block(coinbase));
+
+        // 同一批中后面的交易花费前面交易的输出
+        Transaction pay = new Transaction(new OutPoint[]{coinbase.getOutPoint(0)},
+                new UTXO[]{new UTXO("bob", 4, bob), new UTXO("alice", 6, alice)}, null, alice, 2);
+        Transaction forward = new Transaction(new OutPoint[]{pay.getOutPoint(0), coinbase.getOutPoint(1)},
+                new UTXO[]{new UTXO("alice", 24, alice)}, null, bob, 3);
+        utxoSet.validate(new Transaction[]{pay, forward}, false);
+
+        Transaction missing = new Transaction(new OutPoint[]{new OutPoint(pay.getTxHash(), 0)},
+                new UTXO[]{new UTXO("alice", 4, alice)}, null, bob, 4);
+        assertInvalid(utxoSet, missing);
+        Transaction outOfRange = new Transaction(new OutPoint[]{coinbase.getOutPoint(2)},
+                new UTXO[]{new UTXO("alice", 1, alice)}, null, bob, 5);
+        assertInvalid(utxoSet, outOfRange);
+        Transaction wrongKey = new Transaction(new OutPoint[]{coinbase.getOutPoint(1)},
+                new UTXO[]{new UTXO("alice", 20, alice)}, null, alice, 6);
+        assertInvalid(utxoSet, wrongKey);
+        Transaction overspend = new Transaction(new OutPoint[]{coinbase.getOutPoint(0)},
+                new UTXO[]{new UTXO("bob", 11, bob)}, null, alice, 7);
+        assertInvalid(utxoSet, overspend);
+        Transaction again = new Transaction(new OutPoint[]{coinbase.getOutPoint(0)},
+                new UTXO[]{new UTXO("bob", 10, bob)}, null, alice, 8);
+        assertInvalid(utxoSet, pay, again);
+        // 同一交易出现两次；发行交易只允许出现在发行区块中
+        assertInvalid(utxoSet, pay, pay);
+        Transaction issue = new Transaction(new OutPoint[]{},
+                new UTXO[]{new UTXO("alice", 1000, alice)}, null, alice, 9);
+        assertInvalid(utxoSet, issue);
+        // 输出位置上已有未使用的utxo
+        try {
+            utxoSet.validate(new Transaction[]{coinbase}, true);
+            Assert.fail("accepted an existing output");
+        } catch (IllegalArgumentException e) {
+            // 已有的输出不能被覆盖
+        }
+    }
+
+    @Test
+    public void duplicateOutputTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+        UTXO utxo = new UTXO("a", 10, publicKey);
+        Transaction coinbase = new Transaction(new OutPoint[]{}, new UTXO[]{utxo}, null, publicKey, 1);
+
+        UtxoSet utxoSet = new UtxoSet();
+        utxoSet.apply(block(coinbase));
+        try {
+            utxoSet.apply(block(coinbase));
+            Assert.fail("replaced an existing output");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(10, utxoSet.getBalance("a"));
+            Assert.assertEquals(10, utxoSet.getTotalAmount());
+            Assert.assertEquals(1, utxoSet.getUtxos("a").size());
+        }
+
+        // 快照编码中同一输出位置出现两次
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeVarInt(2);
+        for (int i = 0; i < 2; ++i) {
+            coinbase.getOutPoint(0).encode(writer);
+            utxo.encode(writer);
+        }
+        try {
+            UtxoSet.decode(new BinaryReader(writer.toByteArray()), new MemoryUtxoStore());
+            Assert.fail("decoded a repeated output");
+        } catch (IllegalArgumentException e) {
+            // 重复的输出位置被拒绝
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void applyMissingInputTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+        Transaction spend = new Transaction(new OutPoint[]{new OutPoint(Hash.sha256("missing".getBytes()), 0)},
+                new UTXO[]{new UTXO("a", 1, publicKey)}, null, publicKey, 1);
+        new UtxoSet().apply(block(spend));
+    }
+
+    private static void assertInvalid(UtxoSet utxoSet, Transaction... transactions) {
+        try {
+            utxoSet.validate(transactions, false);
+            Assert.fail("accepted invalid transactions");
+        } catch (IllegalArgumentException e) {
+            // 不合法的交易被拒绝
+        }
+    }
+
+    private static Block block(Transaction... transactions) {
+        BlockBody blockBody = new BlockBody(MerkleTree.build(transactions), transactions);
+        return new Block(new BlockHeader(null, blockBody.getMerkleRootHash(), 0), blockBody);
+    }
+}
@@ -0,0 +1,107 @@
+package unit;
+
+import data.Block;
+import data.BlockBody;
+import data.BlockHeader;
+import data.MemoryUtxoStore;
+import data.MerkleTree;
+import data.OutPoint;
+import data.Transaction;
+import data.UTXO;
+import data.UtxoSet;
+import data.UtxoSnapshot;
+import data.UtxoStore;
+import org.junit.Assert;
+import org.junit.Test;
+import utils.Hash;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UtxoSnapshotTest {
+
+    private static final UtxoSnapshot.StoreFactory MEMORY = new UtxoSnapshot.StoreFactory() {
+        @Override
+        public UtxoStore create() {
+            return new MemoryUtxoStore();
+        }
+    };
+
+    @Test
+    public void restoreTest() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        // 创世区块之后，每个区块把上一区块的第一个输出拆成两个
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(new Block(new BlockHeader(null, null, 0), new BlockBody((Hash) null, new Transaction[]{})));
+        Transaction previous = new Transaction(new OutPoint[]{}, new UTXO[]{new UTXO("a", 1000, publicKey)},
+                null, publicKey, 0);
+        blocks.add(block(blocks, previous));
+        for (int height = 2; height <= 4; ++height) {
+            int amount = previous.getOutUtxos()[0].getAmount();
+            Transaction transaction = new Transaction(new OutPoint[]{previous.getOutPoint(0)},
+                    new UTXO[]{new UTXO("a", amount / 2, publicKey), new UTXO("b", amount - amount / 2, publicKey)},
+                    null, publicKey, height);
+            blocks.add(block(blocks, transaction));
+            previous = transaction;
+        }
+
+        File dir = Files.createTempDirectory("snapshot").toFile();
+        UtxoSet utxoSet = new UtxoSet();
+        for (int height = 0; height < blocks.size(); ++height) {
+            utxoSet.apply(blocks.get(height));
+            if (height == 2 || height == 3) {
+                UtxoSnapshot.write(dir, height, blocks.get(height).getHash(), utxoSet);
+            }
+        }
+        Assert.assertEquals(2, UtxoSnapshot.list(dir).size());
+
+        UtxoSnapshot snapshot = UtxoSnapshot.read(UtxoSnapshot.list(dir).get(0), new MemoryUtxoStore());
+        Assert.assertEquals(3, snapshot.getHeight());
+        Assert.assertEquals(blocks.get(3).getHash(), snapshot.getBlockHash());
+        assertSameState(utxoSet, UtxoSnapshot.restore(dir, blocks, MEMORY));
+
+        // 最新的快照损坏后退回上一个快照
+        try (RandomAccessFile file = new RandomAccessFile(UtxoSnapshot.list(dir).get(0), "rw")) {
+            file.seek(40);
+            file.write(file.read() ^ 1);
+        }
+        assertSameState(utxoSet, UtxoSnapshot.restore(dir, blocks, MEMORY));
+
+        // 快照与链上的区块不符时从创世区块开始重放
+        List<Block> shorter = new ArrayList<>(blocks.subList(0, 2));
+        Transaction coinbase = blocks.get(1).getBlockBody().getTransactions()[0];
+        shorter.add(block(shorter, new Transaction(new OutPoint[]{coinbase.getOutPoint(0)},
+                new UTXO[]{new UTXO("b", 1000, publicKey)}, null, publicKey, 2)));
+        UtxoSet replayed = new UtxoSet();
+        for (Block block : shorter) {
+            replayed.apply(block);
+        }
+        assertSameState(replayed, UtxoSnapshot.restore(dir, shorter, MEMORY));
+
+        UtxoSnapshot.prune(dir, 1);
+        Assert.assertEquals(1, UtxoSnapshot.list(dir).size());
+    }
+
+    private static void assertSameState(UtxoSet expected, UtxoSet actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected.getTotalAmount(), actual.getTotalAmount());
+        Assert.assertEquals(expected.getBalance("a"), actual.getBalance("a"));
+        Assert.assertEquals(expected.getBalance("b"), actual.getBalance("b"));
+        Assert.assertEquals(expected.getUtxos("b"), actual.getUtxos("b"));
+    }
+
+    private static Block block(List<Block> blocks, Transaction... transactions) {
+        BlockBody blockBody = new BlockBody(MerkleTree.build(transactions), transactions);
+        Hash preBlockHash = blocks.get(blocks.size() - 1).getHash();
+        return new Block(new BlockHeader(preBlockHash, blockBody.getMerkleRootHash(), 0), blockBody);
+    }
+}